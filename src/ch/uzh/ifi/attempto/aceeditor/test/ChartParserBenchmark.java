@@ -0,0 +1,106 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.aceeditor.test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.uzh.ifi.attempto.chartparser.ChartParser;
+
+/**
+ * Measures the parsing time of the ACE Editor grammar on the sentences of the parsing test. The
+ * sentences are parsed several times after some warm-up rounds, and the average time and the
+ * average number of allocated bytes per sentence are reported for each round. The allocated bytes
+ * can only be measured on JVMs that support this for threads (like HotSpot).
+ */
+public class ChartParserBenchmark {
+	
+	private static final int warmUpRounds = 2;
+	private static final int rounds = 5;
+	
+	private static ChartParser chartparser = new ChartParser(new TestGrammar(), "test");
+	
+	/**
+	 * Starts the benchmark.
+	 * 
+	 * @param args The number of sentences to be parsed (optional, default: all).
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String[]> sentences = readSentences(
+				"src/ch/uzh/ifi/attempto/aceeditor/test/sentences.txt",
+				args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE
+			);
+		
+		for (int i = 0 ; i < warmUpRounds ; i++) {
+			parse(sentences);
+		}
+		
+		System.out.println("round    time (ms)    per sentence (us)    allocated per sentence (kB)");
+		for (int i = 1 ; i <= rounds ; i++) {
+			long a = getAllocatedBytes();
+			long t = parse(sentences);
+			a = getAllocatedBytes() - a;
+			System.out.println(String.format(
+					"%5d %12d %20.1f %30.1f",
+					i,
+					t / 1000000,
+					t / 1000.0 / sentences.size(),
+					a / 1024.0 / sentences.size()
+				));
+		}
+	}
+	
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+					Thread.currentThread().getId()
+				);
+		}
+		return 0;
+	}
+	
+	private static List<String[]> readSentences(String fileName, int max) throws IOException {
+		List<String[]> sentences = new ArrayList<String[]>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		String line;
+		while ((line = in.readLine()) != null && sentences.size() < max) {
+			sentences.add(line.replaceFirst(" *$", "").split("  "));
+		}
+		in.close();
+		return sentences;
+	}
+	
+	private static long parse(List<String[]> sentences) {
+		long start = System.nanoTime();
+		for (String[] tokens : sentences) {
+			chartparser.removeAllTokens();
+			for (String t : tokens) {
+				chartparser.addToken(t);
+			}
+			if (!chartparser.isComplete()) {
+				throw new RuntimeException("Text could not be parsed: " + Arrays.asList(tokens));
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+}
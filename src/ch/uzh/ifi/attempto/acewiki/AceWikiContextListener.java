@@ -0,0 +1,66 @@
+// This file is part of AceWiki.
+// Copyright 2011, AceWiki developers.
+//
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+//
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import ch.uzh.ifi.attempto.base.Logger;
+
+/**
+ * This listener manages the resources that are shared by all AceWiki servlets of a web
+ * application. When the web application is started, it configures the log files on the basis of
+ * the context parameters. When the web application is stopped, which happens after all servlets
+ * have been destroyed, it closes the storage and stops the logger. It has to be declared in the
+ * web.xml file:
+ * <pre>
+ * &lt;listener&gt;
+ *   &lt;listener-class&gt;ch.uzh.ifi.attempto.acewiki.AceWikiContextListener&lt;/listener-class&gt;
+ * &lt;/listener&gt;
+ * </pre>
+ */
+public class AceWikiContextListener implements ServletContextListener {
+
+	/**
+	 * Creates a new listener object.
+	 */
+	public AceWikiContextListener() {
+	}
+
+	public void contextInitialized(ServletContextEvent event) {
+		ServletContext context = event.getServletContext();
+		Map<String, String> parameters = new HashMap<String, String>();
+		Enumeration<?> names = context.getInitParameterNames();
+		while (names.hasMoreElements()) {
+			String n = names.nextElement().toString();
+			parameters.put("context:" + n, context.getInitParameter(n));
+		}
+		Logger.setParameters(parameters);
+	}
+
+	public void contextDestroyed(ServletContextEvent event) {
+		// The storage is shared by all backends, so it is closed only once:
+		Backend.closeStorage();
+		// The logger is shared by all wikis and is stopped last, as closing the storage can
+		// still log:
+		Logger.shutdown();
+	}
+
+}
@@ -18,6 +18,7 @@ import java.util.Map;
 
 import ch.uzh.ifi.attempto.acewiki.core.AceWikiStorage;
 import ch.uzh.ifi.attempto.acewiki.core.FileBasedStorage;
+import ch.uzh.ifi.attempto.acewiki.core.JournalStorage;
 import ch.uzh.ifi.attempto.acewiki.core.Ontology;
 import ch.uzh.ifi.attempto.echocomp.LocaleResources;
 
@@ -45,19 +46,41 @@ public class Backend {
 	 */
 	public Backend(Map<String, String> parameters) {
 		this.parameters = parameters;
-		if (storage == null) {
-			storage = new FileBasedStorage(parameters.get("context:datadir"));
+		synchronized (Backend.class) {
+			if (storage == null) {
+				if ("journal".equals(parameters.get("context:storage"))) {
+					storage = new JournalStorage(parameters.get("context:datadir"));
+				} else {
+					storage = new FileBasedStorage(parameters.get("context:datadir"));
+				}
+			}
 		}
 		ontology = getStorage().getOntology(parameters.get("ontology"), parameters);
 	}
 
+	/**
+	 * Closes the storage that is shared by all backends. This is done once, when the web
+	 * application is stopped (see {@link AceWikiContextListener}), after all servlets have been
+	 * destroyed.
+	 */
+	public static void closeStorage() {
+		AceWikiStorage s;
+		synchronized (Backend.class) {
+			s = storage;
+			storage = null;
+		}
+		if (s != null) s.close();
+	}
+
 	/**
 	 * Get the storage associated with this backend.
 	 *
 	 * @return The AceWikiStorage instance.
 	 */
 	public AceWikiStorage getStorage() {
-		return storage;
+		synchronized (Backend.class) {
+			return storage;
+		}
 	}
 
 	/**
@@ -0,0 +1,346 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import nextapp.echo.app.ApplicationInstance;
+import ch.uzh.ifi.attempto.echocomp.EchoThread;
+
+/**
+ * This class executes the asynchronous tasks of all wiki sessions on a shared, fixed number of
+ * threads. Each session has its own queue (see {@link Session}). Strong tasks are executed before
+ * weak ones, and the sessions with pending tasks take turns, so that a session with many tasks
+ * cannot delay the others. The tasks of one session are executed one after the other, in the
+ * order in which they were added (within the same priority).
+ *<p>
+ * Weak tasks can have an owner, for example the page whose content they compute. When the owner
+ * is no longer needed, its waiting tasks can be cancelled (see {@link Session#cancel(Object)}).
+ */
+public class TaskExecutor {
+
+	private static TaskExecutor instance;
+
+	// The sessions with pending tasks that are not running at the moment, in the order in which
+	// they get their turn:
+	private final LinkedList<Session> readySessions = new LinkedList<Session>();
+
+	private int queuedCount;
+	private long executedCount;
+	private long cancelledCount;
+	private long totalWaitTime;
+	private long maxWaitTime;
+
+	/**
+	 * Creates a new executor with the given number of threads.
+	 *
+	 * @param threadCount The number of threads.
+	 */
+	public TaskExecutor(int threadCount) {
+		for (int i = 1 ; i <= threadCount ; i++) {
+			Worker w = new Worker("acewiki-tasks-" + i);
+			w.setDaemon(true);
+			w.setPriority(Thread.MIN_PRIORITY);
+			w.start();
+		}
+	}
+
+	/**
+	 * Returns the executor that is shared by all wikis of this process. It has one thread per
+	 * processor, but at least two.
+	 *
+	 * @return The shared executor.
+	 */
+	public static synchronized TaskExecutor getInstance() {
+		if (instance == null) {
+			instance = new TaskExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		}
+		return instance;
+	}
+
+	/**
+	 * Creates a new session with its own task queue.
+	 *
+	 * @param application The application instance of the session.
+	 * @return The new session.
+	 */
+	public Session createSession(ApplicationInstance application) {
+		return new Session(application);
+	}
+
+	/**
+	 * Returns the number of tasks that are waiting to be executed.
+	 *
+	 * @return The number of waiting tasks.
+	 */
+	public synchronized int getQueuedTaskCount() {
+		return queuedCount;
+	}
+
+	/**
+	 * Returns the number of tasks that have been started so far.
+	 *
+	 * @return The number of started tasks.
+	 */
+	public synchronized long getExecutedTaskCount() {
+		return executedCount;
+	}
+
+	/**
+	 * Returns the number of waiting tasks that have been cancelled.
+	 *
+	 * @return The number of cancelled tasks.
+	 */
+	public synchronized long getCancelledTaskCount() {
+		return cancelledCount;
+	}
+
+	/**
+	 * Returns the average time in milliseconds that the tasks have waited before they were
+	 * started.
+	 *
+	 * @return The average waiting time.
+	 */
+	public synchronized long getAverageWaitTime() {
+		if (executedCount == 0) return 0;
+		return totalWaitTime / executedCount / 1000000;
+	}
+
+	/**
+	 * Returns the longest time in milliseconds that a task has waited before it was started.
+	 *
+	 * @return The longest waiting time.
+	 */
+	public synchronized long getMaxWaitTime() {
+		return maxWaitTime / 1000000;
+	}
+
+	private synchronized void add(Session session, Runnable runnable, Object owner,
+			boolean strong) {
+		if (session.cancelled) return;
+		QueuedTask task = new QueuedTask(session, runnable, owner);
+		if (strong) {
+			session.strongTasks.add(task);
+		} else {
+			session.weakTasks.add(task);
+		}
+		queuedCount++;
+		if (!session.running && !readySessions.contains(session)) {
+			readySessions.add(session);
+		}
+		notify();
+	}
+
+	/**
+	 * Waits for the next task and removes it from its session, which is marked as running. This
+	 * is done in one step, so that the task cannot be removed by a cancellation in between.
+	 */
+	private synchronized QueuedTask take() {
+		while (true) {
+			Session next = null;
+			Session firstReady = null;
+			Iterator<Session> i = readySessions.iterator();
+			while (i.hasNext()) {
+				Session s = i.next();
+				if (s.cancelled || !s.hasTasks()) {
+					i.remove();
+					continue;
+				}
+				if (firstReady == null) firstReady = s;
+				if (!s.strongTasks.isEmpty()) {
+					next = s;
+					break;
+				}
+			}
+			if (next == null) next = firstReady;
+			if (next != null) {
+				readySessions.remove(next);
+				next.running = true;
+				QueuedTask task;
+				if (!next.strongTasks.isEmpty()) {
+					task = next.strongTasks.removeFirst();
+				} else {
+					task = next.weakTasks.removeFirst();
+				}
+				queuedCount--;
+				executedCount++;
+				long waitTime = System.nanoTime() - task.enqueueTime;
+				totalWaitTime += waitTime;
+				if (waitTime > maxWaitTime) maxWaitTime = waitTime;
+				return task;
+			}
+			try {
+				wait();
+			} catch (InterruptedException ex) {}
+		}
+	}
+
+	private synchronized void finish(Session session) {
+		session.running = false;
+		if (session.hasTasks()) {
+			// The session goes to the end of the line:
+			readySessions.add(session);
+			notify();
+		}
+	}
+
+	private synchronized void cancel(Session session) {
+		session.cancelled = true;
+		int count = session.strongTasks.size() + session.weakTasks.size();
+		queuedCount -= count;
+		cancelledCount += count;
+		session.strongTasks.clear();
+		session.weakTasks.clear();
+		readySessions.remove(session);
+	}
+
+	private synchronized void cancel(Session session, Object owner) {
+		Iterator<QueuedTask> i = session.weakTasks.iterator();
+		while (i.hasNext()) {
+			if (i.next().owner == owner) {
+				i.remove();
+				queuedCount--;
+				cancelledCount++;
+			}
+		}
+		// The session is dropped from the ready list by take() if it has no tasks left.
+	}
+
+	/**
+	 * This class represents the task queue of one session.
+	 */
+	public class Session {
+
+		private final ApplicationInstance application;
+		private final LinkedList<QueuedTask> strongTasks = new LinkedList<QueuedTask>();
+		private final LinkedList<QueuedTask> weakTasks = new LinkedList<QueuedTask>();
+		private boolean running = false;
+		private boolean cancelled = false;
+
+		private Session(ApplicationInstance application) {
+			this.application = application;
+		}
+
+		/**
+		 * Adds a strong task, which is executed before all weak tasks.
+		 *
+		 * @param task The task.
+		 */
+		public void addStrongTask(Runnable task) {
+			add(this, task, null, true);
+		}
+
+		/**
+		 * Adds a weak task, which is executed after all strong tasks.
+		 *
+		 * @param task The task.
+		 */
+		public void addWeakTask(Runnable task) {
+			add(this, task, null, false);
+		}
+
+		/**
+		 * Adds a weak task that belongs to the given owner, which is executed after all strong
+		 * tasks. It is removed if the tasks of the owner are cancelled before it is started.
+		 *
+		 * @param task The task.
+		 * @param owner The owner of the task.
+		 */
+		public void addWeakTask(Runnable task, Object owner) {
+			add(this, task, owner, false);
+		}
+
+		/**
+		 * Returns the number of tasks of this session that are waiting to be executed.
+		 *
+		 * @return The number of waiting tasks.
+		 */
+		public int getQueuedTaskCount() {
+			synchronized (TaskExecutor.this) {
+				return strongTasks.size() + weakTasks.size();
+			}
+		}
+
+		/**
+		 * Removes all waiting tasks of this session. Tasks that are added later are ignored. A
+		 * task that is running at the moment is not interrupted.
+		 */
+		public void cancel() {
+			TaskExecutor.this.cancel(this);
+		}
+
+		/**
+		 * Removes the waiting weak tasks of this session that belong to the given owner. A task
+		 * that is running at the moment is not interrupted.
+		 *
+		 * @param owner The owner of the tasks.
+		 */
+		public void cancel(Object owner) {
+			TaskExecutor.this.cancel(this, owner);
+		}
+
+		private boolean hasTasks() {
+			return !strongTasks.isEmpty() || !weakTasks.isEmpty();
+		}
+
+	}
+
+	private static class QueuedTask {
+
+		final Session session;
+		final Runnable runnable;
+		final Object owner;
+		final long enqueueTime = System.nanoTime();
+
+		QueuedTask(Session session, Runnable runnable, Object owner) {
+			this.session = session;
+			this.runnable = runnable;
+			this.owner = owner;
+		}
+
+	}
+
+	private class Worker extends EchoThread {
+
+		private volatile ApplicationInstance application;
+
+		Worker(String name) {
+			setName(name);
+		}
+
+		public ApplicationInstance getApplication() {
+			return application;
+		}
+
+		public void run() {
+			while (true) {
+				QueuedTask task = take();
+				Session session = task.session;
+				application = session.application;
+				try {
+					task.runnable.run();
+				} catch (Throwable ex) {
+					ex.printStackTrace();
+				} finally {
+					application = null;
+					finish(session);
+				}
+			}
+		}
+
+	}
+
+}
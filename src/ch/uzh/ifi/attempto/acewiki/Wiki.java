@@ -144,8 +144,7 @@ public class Wiki implements ActionListener, ExternalEventListener {
 
 	private TaskQueueHandle taskQueue;
 	private MessageWindow waitWindow;
-	private List<Task> strongTasks = new ArrayList<Task>();
-	private List<Task> weakTasks = new ArrayList<Task>();
+	private TaskExecutor.Session asyncTasks;
 
 	private ExternalEventMonitor externalEventMonitor;
 
@@ -153,8 +152,6 @@ public class Wiki implements ActionListener, ExternalEventListener {
 
 	private static Properties properties;
 
-	private boolean disposed = false;
-
 	private boolean locked = false;
 	private ActionListener lockedListener;
 
@@ -227,6 +224,9 @@ public class Wiki implements ActionListener, ExternalEventListener {
 			}
 		}
 
+		// The first page can already add asynchronous tasks:
+		asyncTasks = TaskExecutor.getInstance().createSession(application);
+
 		String showpage = getURLParameterValue("showpage");
 		if (showpage != null && ontology.getElement(showpage) != null) {
 			setCurrentPage(ArticlePage.create(ontology.getElement(showpage), this));
@@ -234,51 +234,6 @@ public class Wiki implements ActionListener, ExternalEventListener {
 			setCurrentPage(startPage);
 		}
 
-		// This thread checks regularly for pending tasks and executes them. Strong tasks take
-		// precedence over weak ones.
-		EchoThread asyncThread = new EchoThread() {
-
-			public ApplicationInstance getApplication() {
-				return application;
-			}
-
-			public void run() {
-				while (true) {
-					try {
-						sleep(500);
-					} catch (InterruptedException ex) {}
-
-					if (disposed) {
-						break;
-					}
-
-					Task task = null;
-					if (strongTasks.size() > 0) {
-						task = strongTasks.remove(0);
-					} else if (weakTasks.size() > 0) {
-						task = weakTasks.remove(0);
-					}
-
-					final Task fTask = task;
-					if (fTask != null) {
-						task.run();
-						application.enqueueTask(taskQueue, new Runnable() {
-							public synchronized void run() {
-								fTask.updateGUI();
-								if (waitWindow != null) {
-									removeWindow(waitWindow);
-									waitWindow = null;
-								}
-							}
-						});
-					}
-				}
-			}
-
-		};
-		asyncThread.setPriority(Thread.MIN_PRIORITY);
-		asyncThread.start();
-
 		update();
 	}
 
@@ -880,6 +835,11 @@ public class Wiki implements ActionListener, ExternalEventListener {
 	}
 
 	private void setCurrentPage(WikiPage currentPage) {
+		// The waiting tasks of the previous page are no longer needed. If that page is shown
+		// again, its update adds them again:
+		if (this.currentPage != null) {
+			asyncTasks.cancel(this.currentPage);
+		}
 		this.currentPage = currentPage;
 		refresh();
 	}
@@ -1211,17 +1171,47 @@ public class Wiki implements ActionListener, ExternalEventListener {
 		waitWindow.setClosable(false);
 		showWindow(waitWindow);
 
-		strongTasks.add(task);
+		asyncTasks.addStrongTask(createAsyncRunnable(task));
 	}
 
 	/**
 	 * Runs the task in an asynchronous way without showing a wait window. The task is treated as a
-	 * weak task that can be overtaken by strong tasks.
+	 * weak task that can be overtaken by strong tasks. It belongs to the page that is currently
+	 * shown.
 	 *
 	 * @param task The task.
 	 */
 	public void enqueueWeakAsyncTask(Task task) {
-		weakTasks.add(task);
+		enqueueWeakAsyncTask(task, currentPage);
+	}
+
+	/**
+	 * Runs the task in an asynchronous way without showing a wait window. The task is treated as a
+	 * weak task that can be overtaken by strong tasks. If another page is shown before the task
+	 * is started, the task is cancelled.
+	 *
+	 * @param task The task.
+	 * @param page The page the task belongs to.
+	 */
+	public void enqueueWeakAsyncTask(Task task, WikiPage page) {
+		asyncTasks.addWeakTask(createAsyncRunnable(task), page);
+	}
+
+	private Runnable createAsyncRunnable(final Task task) {
+		return new Runnable() {
+			public void run() {
+				task.run();
+				application.enqueueTask(taskQueue, new Runnable() {
+					public synchronized void run() {
+						task.updateGUI();
+						if (waitWindow != null) {
+							removeWindow(waitWindow);
+							waitWindow = null;
+						}
+					}
+				});
+			}
+		};
 	}
 
 	/**
@@ -1250,7 +1240,7 @@ public class Wiki implements ActionListener, ExternalEventListener {
 	 * Cleans up when the object is no longer used.
 	 */
 	public void dispose() {
-		disposed = true;
+		asyncTasks.cancel();
 		externalEventMonitor.removeExternalEventListener(this);
 		externalEventMonitor.dispose();
 	}
@@ -87,6 +87,15 @@ public class ACEHandler extends MonolingualHandler {
 		textOperator = new ACETextOperator(ontology);
 	}
 
+	/**
+	 * Returns the lexicon that provides the lexical rules of the ontology elements.
+	 * 
+	 * @return The lexicon.
+	 */
+	ACEOWLLexicon getLexicon() {
+		return lexicon;
+	}
+
 	public TextOperator getTextOperator() {
 		return textOperator;
 	}
@@ -21,6 +21,7 @@ import ch.uzh.ifi.attempto.acewiki.core.LanguageHandler;
 import ch.uzh.ifi.attempto.acewiki.core.MonolingualEngine;
 import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
 import ch.uzh.ifi.attempto.acewiki.core.Sentence;
+import ch.uzh.ifi.attempto.acewiki.core.WordIndex;
 import ch.uzh.ifi.attempto.acewiki.owl.AceWikiOWLReasoner;
 import ch.uzh.ifi.attempto.acewiki.owl.OWLXMLExporter;
 
@@ -34,6 +35,7 @@ public class ACEOWLEngine extends MonolingualEngine {
 	
 	private ACEHandler languageHandler = new ACEHandler();
 	private AceWikiOWLReasoner reasoner = new AceWikiOWLReasoner();
+	private ACEOWLWordIndex wordIndex = new ACEOWLWordIndex(languageHandler.getLexicon());
 	
 	/**
 	 * Creates a new language engine for ACE/OWL.
@@ -56,6 +58,10 @@ public class ACEOWLEngine extends MonolingualEngine {
 		return reasoner;
 	}
 
+	public WordIndex getWordIndex() {
+		return wordIndex;
+	}
+
 	public OntologyElement createOntologyElement(String type) {
 		if (type.equals("propername")) {
 			return new ProperNameIndividual();
@@ -16,6 +16,12 @@ package ch.uzh.ifi.attempto.acewiki.aceowl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import ch.uzh.ifi.attempto.acewiki.core.Ontology;
 import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
@@ -24,7 +30,9 @@ import ch.uzh.ifi.attempto.chartparser.DynamicLexicon;
 import ch.uzh.ifi.attempto.chartparser.LexicalRule;
 
 /**
- * This class manages the lexical entries for AceWiki.
+ * This class manages the lexical entries for AceWiki. The lexical rules of the ontology elements
+ * are kept in an index by their category name, which is updated by {@link ACEOWLWordIndex} when
+ * elements are added, changed, or removed.
  * 
  * @author Tobias Kuhn
  */
@@ -32,6 +40,10 @@ public class ACEOWLLexicon implements DynamicLexicon {
 	
 	private Ontology ontology;
 	
+	// Lexical rules of the ontology elements by category name and element id:
+	private final Map<String, Map<Long, List<LexicalRule>>> ruleIndex =
+			new ConcurrentHashMap<String, Map<Long, List<LexicalRule>>>();
+	
 	/**
 	 * Creates a new lexicon manager.
 	 */
@@ -59,15 +71,16 @@ public class ACEOWLLexicon implements DynamicLexicon {
 				lexRules.add(new LexicalRule("number", i + ""));
 			}
 		} else {
-			for (OntologyElement el : ontology.getOntologyElements()) {
-				if (el instanceof ACEOWLOntoElement) {
-					((ACEOWLOntoElement) el).collectLexicalRules(catName, lexRules);
+			// The indexed rules are shared; the chart parser copies them before using them.
+			Map<Long, List<LexicalRule>> rules = ruleIndex.get(catName);
+			if (rules != null) {
+				for (List<LexicalRule> l : rules.values()) {
+					lexRules.addAll(l);
 				}
 			}
+			return lexRules;
 		}
-		for (LexicalRule r : lexRules) {
-			r.getCategory().setFeature("text", r.getWord().getName());
-		}
+		setTextFeatures(lexRules);
 		return lexRules;
 	}
 
@@ -87,10 +100,63 @@ public class ACEOWLLexicon implements DynamicLexicon {
 				((ACEOWLOntoElement) oe).collectLexicalRules(null, lexRules);
 			}
 		}
+		setTextFeatures(lexRules);
+		return lexRules;
+	}
+	
+	/**
+	 * Adds the lexical rules of the given ontology element to the index.
+	 * 
+	 * @param element The ontology element.
+	 */
+	void addElement(OntologyElement element) {
+		if (!(element instanceof ACEOWLOntoElement)) return;
+		List<LexicalRule> lexRules = new ArrayList<LexicalRule>();
+		((ACEOWLOntoElement) element).collectLexicalRules(null, lexRules);
+		setTextFeatures(lexRules);
+		
+		Map<String, List<LexicalRule>> rulesByCat = new HashMap<String, List<LexicalRule>>();
+		for (LexicalRule r : lexRules) {
+			String catName = r.getCategory().getName();
+			List<LexicalRule> l = rulesByCat.get(catName);
+			if (l == null) {
+				l = new ArrayList<LexicalRule>();
+				rulesByCat.put(catName, l);
+			}
+			l.add(r);
+		}
+		for (String catName : rulesByCat.keySet()) {
+			getRules(catName).put(
+					element.getId(),
+					Collections.unmodifiableList(rulesByCat.get(catName))
+				);
+		}
+	}
+	
+	/**
+	 * Removes the lexical rules of the given ontology element from the index.
+	 * 
+	 * @param element The ontology element.
+	 */
+	void removeElement(OntologyElement element) {
+		for (Map<Long, List<LexicalRule>> rules : ruleIndex.values()) {
+			rules.remove(element.getId());
+		}
+	}
+	
+	private synchronized Map<Long, List<LexicalRule>> getRules(String catName) {
+		Map<Long, List<LexicalRule>> rules = ruleIndex.get(catName);
+		if (rules == null) {
+			rules = new ConcurrentSkipListMap<Long, List<LexicalRule>>();
+			ruleIndex.put(catName, rules);
+		}
+		return rules;
+	}
+	
+	private static void setTextFeatures(Collection<LexicalRule> lexRules) {
 		for (LexicalRule r : lexRules) {
 			r.getCategory().setFeature("text", r.getWord().getName());
 		}
-		return lexRules;
 	}
 	
 	private static void addVariableEntries(Collection<LexicalRule> entries, String cat) {
@@ -0,0 +1,57 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.aceowl;
+
+import ch.uzh.ifi.attempto.acewiki.core.DefaultWordIndex;
+import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
+
+/**
+ * This word index keeps the category index of the ACE/OWL lexicon up-to-date when ontology
+ * elements are added, changed, or removed.
+ */
+public class ACEOWLWordIndex extends DefaultWordIndex {
+	
+	private final ACEOWLLexicon lexicon;
+	
+	/**
+	 * Creates a new word index for the given lexicon.
+	 * 
+	 * @param lexicon The lexicon whose index should be updated.
+	 */
+	public ACEOWLWordIndex(ACEOWLLexicon lexicon) {
+		this.lexicon = lexicon;
+	}
+	
+	public void elementAdded(OntologyElement element) {
+		super.elementAdded(element);
+		lexicon.addElement(element);
+	}
+	
+	public void elementRemoved(OntologyElement element) {
+		super.elementRemoved(element);
+		lexicon.removeElement(element);
+	}
+	
+	public void elementBeforeChange(OntologyElement element) {
+		super.elementBeforeChange(element);
+		lexicon.removeElement(element);
+	}
+	
+	public void elementAfterChange(OntologyElement element) {
+		super.elementAfterChange(element);
+		lexicon.addElement(element);
+	}
+
+}
@@ -45,7 +45,6 @@ import ch.uzh.ifi.attempto.acewiki.core.OntologyTextElement;
 import ch.uzh.ifi.attempto.acewiki.core.SentenceDetail;
 import ch.uzh.ifi.attempto.acewiki.owl.AceWikiOWLReasoner;
 import ch.uzh.ifi.attempto.acewiki.owl.OWLSentence;
-import ch.uzh.ifi.attempto.ape.ACEParser;
 import ch.uzh.ifi.attempto.ape.ACEParserResult;
 import ch.uzh.ifi.attempto.ape.Lexicon;
 import ch.uzh.ifi.attempto.ape.LexiconEntry;
@@ -69,7 +68,7 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 	private String serialized;
 
 	// Unless initialized when the object is created, this field is evaluated lazily:
-	private TextContainer textContainer;
+	private volatile TextContainer textContainer;
 
 	// These fields are evaluated lazily:
 	private ACEParserResult parserResult;
@@ -129,14 +128,17 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 	}
 
 	public MultiTextContainer getTextContainer() {
-		if (textContainer == null) {
-			tokenize();
+		TextContainer tc = textContainer;
+		if (tc == null) {
+			tc = tokenize();
 		}
-		return new MultiTextContainer(textContainer);
+		return new MultiTextContainer(tc);
 	}
 
-	private void tokenize() {
-		textContainer = new TextContainer(getTextOperator());
+	private TextContainer tokenize() {
+		// The text container is built first and then assigned, so that concurrent readers never
+		// see a partially built text container:
+		TextContainer tc = new TextContainer(getTextOperator());
 
 		// TODO Remove legacy code at some point
 
@@ -169,11 +171,11 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 				} catch (Exception ex) {
 					throw new RuntimeException("Could not resolve link: " + s, ex);
 				}
-				textContainer.addElement(te);
+				tc.addElement(te);
 			} else {
 				TextElement te = getTextOperator().createTextElement(s);
 				if (!(te instanceof OntologyTextElement) || serialized.indexOf("<") > -1) {
-					textContainer.addElement(te);
+					tc.addElement(te);
 				} else {
 					// This is legacy code to support old acewikidata files:
 					OntologyTextElement ote = (OntologyTextElement) te;
@@ -181,21 +183,23 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 					int wordId = ote.getWordNumber();
 					if (oe instanceof ProperNameIndividual) {
 						ProperNameIndividual ind = (ProperNameIndividual) oe;
-						if (ind.hasDefiniteArticle(wordId-1) && textContainer.getTextElementsCount() > 0) {
-							String precedingText = textContainer.
-									getTextElement(textContainer.getTextElementsCount()-1).
+						if (ind.hasDefiniteArticle(wordId-1) && tc.getTextElementsCount() > 0) {
+							String precedingText = tc.
+									getTextElement(tc.getTextElementsCount()-1).
 									getText();
 							if (precedingText.equals("the") || precedingText.equals("The")) {
-								textContainer.removeLastElement();
+								tc.removeLastElement();
 								wordId--;
 							}
 						}
 					}
-					textContainer.addElement(new OntologyTextElement(oe, wordId));
+					tc.addElement(new OntologyTextElement(oe, wordId));
 					// End of legacy code
 				}
 			}
 		}
+		textContainer = tc;
+		return tc;
 	}
 
 	/**
@@ -253,32 +257,28 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 		AceWikiOWLReasoner reasoner = (AceWikiOWLReasoner) getOntology()
 				.getReasoner().getWrappedReasoner();
 
-		ACEParser ape = APE.getParser();
-		synchronized (ape) {
-			ape.setURI(getOntology().getURI());
-			ape.setClexEnabled(false);
-			Lexicon lexicon = new Lexicon();
-			for (TextElement te : getTextContainer().getTextElements()) {
-				if (te instanceof OntologyTextElement) {
-					OntologyElement oe = ((OntologyTextElement) te).getOntologyElement();
-					if (oe instanceof ACEOWLOntoElement) {
-						for (LexiconEntry le : ((ACEOWLOntoElement) oe).getLexiconEntries()) {
-							lexicon.addEntry(le);
-						}
+		Lexicon lexicon = new Lexicon();
+		for (TextElement te : getTextContainer().getTextElements()) {
+			if (te instanceof OntologyTextElement) {
+				OntologyElement oe = ((OntologyTextElement) te).getOntologyElement();
+				if (oe instanceof ACEOWLOntoElement) {
+					for (LexiconEntry le : ((ACEOWLOntoElement) oe).getLexiconEntries()) {
+						lexicon.addEntry(le);
 					}
 				}
 			}
-			parserResult = ape.getMultiOutput(
-					getText(),
-					lexicon,
-					PARAPHRASE1,
-					SYNTAX,
-					SYNTAXPP,
-					OWLXML,
-					OWLFSSPP,
-					DRSPP
-					);
 		}
+		parserResult = APE.parse(
+				getText(),
+				lexicon,
+				getOntology().getURI(),
+				PARAPHRASE1,
+				SYNTAX,
+				SYNTAXPP,
+				OWLXML,
+				OWLFSSPP,
+				DRSPP
+				);
 		MessageContainer mc = parserResult.getMessageContainer();
 		String owlxml = parserResult.get(OWLXML);
 
@@ -298,36 +298,40 @@ public abstract class ACESentence extends MonolingualSentence implements OWLSent
 			reasonable = isOWL;
 		}
 
-		owlAxioms = null;
-		OWLOntology owlOntology = null;
-		if (isOWL) {
-			try {
-				owlOntology = ontologyManager.loadOntologyFromOntologyDocument(
-						new StringDocumentSource(owlxml)
-						);
-				if (owlOntology.isEmpty()) {
-					reasonable = false;
-					isOWL = false;
-					isOWLSWRL = false;
-				} else {
-					owlAxioms = owlOntology.getAxioms();
+		// The ontology manager is shared and sentences can be updated at the same time:
+		synchronized (ontologyManager) {
+			owlAxioms = null;
+			OWLOntology owlOntology = null;
+			if (isOWL) {
+				try {
+					owlOntology = ontologyManager.loadOntologyFromOntologyDocument(
+							new StringDocumentSource(owlxml)
+							);
+					if (owlOntology.isEmpty()) {
+						reasonable = false;
+						isOWL = false;
+						isOWLSWRL = false;
+					} else {
+						owlAxioms = owlOntology.getAxioms();
+					}
+				} catch (OWLOntologyCreationException ex) {
+					ex.printStackTrace();
 				}
-			} catch (OWLOntologyCreationException ex) {
-				ex.printStackTrace();
 			}
-		}
-		OWLProfile owlProfile = reasoner.getOWLProfile();
-		if (reasonable && owlOntology != null && owlProfile != null && this instanceof Declaration) {
-			OWLProfileReport r = owlProfile.checkOntology(owlOntology);
-			for (OWLProfileViolation v : r.getViolations()) {
-				if (!v.toString().startsWith("Use of undeclared")) {
-					reasonable = false;
-					break;
+			OWLProfile owlProfile = reasoner.getOWLProfile();
+			if (reasonable && owlOntology != null && owlProfile != null &&
+					this instanceof Declaration) {
+				OWLProfileReport r = owlProfile.checkOntology(owlOntology);
+				for (OWLProfileViolation v : r.getViolations()) {
+					if (!v.toString().startsWith("Use of undeclared")) {
+						reasonable = false;
+						break;
+					}
 				}
 			}
-		}
-		if (owlOntology != null) {
-			ontologyManager.removeOntology(owlOntology);
+			if (owlOntology != null) {
+				ontologyManager.removeOntology(owlOntology);
+			}
 		}
 		if (!reasonable && isIntegrated()) {
 			super.setIntegrated(false);
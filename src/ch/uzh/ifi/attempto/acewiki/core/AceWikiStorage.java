@@ -55,4 +55,10 @@ public interface AceWikiStorage {
 	 */
 	public void save(User user);
 
+	/**
+	 * This method is called when the application is shut down. Implementations can write pending
+	 * data and release resources.
+	 */
+	public void close();
+
 }
@@ -15,17 +15,25 @@
 package ch.uzh.ifi.attempto.acewiki.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
- * This class represents a wiki article.
+ * This class represents a wiki article. Changes to the article are synchronized on the ontology.
+ * The list of statements is replaced as a whole for each change, so that the article can be read
+ * at any time without locking. New sentences are checked for consistency in the background by the
+ * ontology; they are part of the article right away but are only integrated after the check.
  * 
  * @author Tobias Kuhn
  */
 public class Article {
 	
-	private Vector<Statement> statements = new Vector<Statement>();
+	private volatile List<Statement> statements = Collections.emptyList();
 	private final OntologyElement element;
 	private final Ontology ontology;
 	
@@ -40,7 +48,7 @@ public class Article {
 	}
 	
 	void initStatements(List<Statement> statements) {
-		this.statements = new Vector<Statement>(statements);
+		this.statements = Collections.unmodifiableList(new ArrayList<Statement>(statements));
 	}
 	
 	/**
@@ -86,10 +94,12 @@ public class Article {
 	}
 	
 	/**
-	 * Edits a statement of the article. The old statement is replaced by the new statement.
+	 * Edits a statement of the article. The old statement is replaced by the new statement. This
+	 * method waits until the new statement is checked for consistency.
 	 * 
 	 * @param oldStatement The statement that should be edited.
 	 * @param newStatement The new statement.
+	 * @throws InconsistencyException if the new statement is inconsistent with the ontology.
 	 */
 	public void edit(Statement oldStatement, Statement newStatement) {
 		List<Statement> newStatements = new ArrayList<Statement>();
@@ -98,46 +108,67 @@ public class Article {
 	}
 	
 	/**
-	 * Edits a statement of the article. The old statement is replaced by the new statements.
+	 * Edits a statement of the article. The old statement is replaced by the new statements. This
+	 * method waits until the new statements are checked for consistency.
 	 * 
 	 * @param oldStatement The statement that should be edited.
 	 * @param newStatements The new statements.
+	 * @throws InconsistencyException if a new statement is inconsistent with the ontology.
 	 */
 	public void edit(Statement oldStatement, List<Statement> newStatements) {
+		waitForCommit(editStatements(oldStatement, newStatements, null));
+	}
+	
+	/**
+	 * Edits a statement of the article. The old statement is replaced by the new statements. This
+	 * method returns immediately: the new sentences are not integrated until they have been
+	 * checked for consistency in the background, after which the listener is informed.
+	 * 
+	 * @param oldStatement The statement that should be edited.
+	 * @param newStatements The new statements.
+	 * @param listener The listener to be informed when the check is finished, or null. It is
+	 *     not informed if there are no new sentences to be checked.
+	 */
+	public void edit(Statement oldStatement, List<Statement> newStatements,
+			CommitListener listener) {
+		editStatements(oldStatement, newStatements, listener);
+	}
+	
+	private Future<List<Sentence>> editStatements(Statement oldStatement,
+			List<Statement> newStatements, CommitListener listener) {
 		log("edit statement of " + element.getWord() + ": " +
 				oldStatement.getText(getDefaultLanguage()) + " > " +
 				getStatementsString(newStatements));
 
 		synchronized (ontology) {
-			if (statements.contains(oldStatement)) {
-				int i = statements.indexOf(oldStatement);
-				statements.remove(i);
-				statements.addAll(i, newStatements);
+			List<Statement> l = new ArrayList<Statement>(statements);
+			if (l.contains(oldStatement)) {
+				int i = l.indexOf(oldStatement);
+				l.remove(i);
+				l.addAll(i, newStatements);
 			} else {
 				log("error: statement is not around anymore");
-				statements.addAll(0, newStatements);
+				l.addAll(0, newStatements);
 			}
-			if (ontology != null) {
-				if (oldStatement instanceof Sentence) {
-					ontology.retractSentence((Sentence) oldStatement);
-				}
-				for (Statement s : newStatements) {
-					if (s instanceof Sentence) {
-						ontology.commitSentence((Sentence) s);
-					}
-				}
-				ontology.getStorage().save(element);
+			statements = Collections.unmodifiableList(l);
+			if (ontology == null) return null;
+			if (oldStatement instanceof Sentence) {
+				ontology.retractSentence((Sentence) oldStatement);
+				ontology.removeReferences((Sentence) oldStatement);
 			}
+			return commitStatements(newStatements, listener);
 		}
 	}
 	
 	/**
 	 * Adds one new statement to the article. One has to specify in front of which
-	 * statement the new statement should be added.
+	 * statement the new statement should be added. This method waits until the new statement is
+	 * checked for consistency.
 	 * 
 	 * @param followingStatement The statement in front of which the new statement should be added,
 	 *     or null if the statement should be added to the end of the article.
 	 * @param newStatement The new statement to be added.
+	 * @throws InconsistencyException if the new statement is inconsistent with the ontology.
 	 */
 	public void add(Statement followingStatement, Statement newStatement) {
 		List<Statement> newStatements = new ArrayList<Statement>();
@@ -147,33 +178,89 @@ public class Article {
 	
 	/**
 	 * Adds one or more new statements to the article. It has to be specified in front of which
-	 * statement the new statement should be added.
+	 * statement the new statement should be added. This method waits until the new statements are
+	 * checked for consistency.
 	 * 
 	 * @param followingStatement The statement in front of which the new statements should be
 	 *     added, or null if the statements should be added to the end of the article.
 	 * @param newStatements The new statements to be added.
+	 * @throws InconsistencyException if a new statement is inconsistent with the ontology.
 	 */
 	public void add(Statement followingStatement, List<Statement> newStatements) {
+		waitForCommit(addStatements(followingStatement, newStatements, null));
+	}
+	
+	/**
+	 * Adds one or more new statements to the article. It has to be specified in front of which
+	 * statement the new statement should be added. This method returns immediately: the new
+	 * sentences are not integrated until they have been checked for consistency in the
+	 * background, after which the listener is informed.
+	 * 
+	 * @param followingStatement The statement in front of which the new statements should be
+	 *     added, or null if the statements should be added to the end of the article.
+	 * @param newStatements The new statements to be added.
+	 * @param listener The listener to be informed when the check is finished, or null. It is
+	 *     not informed if there are no new sentences to be checked.
+	 */
+	public void add(Statement followingStatement, List<Statement> newStatements,
+			CommitListener listener) {
+		addStatements(followingStatement, newStatements, listener);
+	}
+	
+	private Future<List<Sentence>> addStatements(Statement followingStatement,
+			List<Statement> newStatements, CommitListener listener) {
 		log("add statements of " + element.getWord() + ": " + getStatementsString(newStatements));
 
 		synchronized (ontology) {
-			if (statements.contains(followingStatement)) {
-				statements.addAll(statements.indexOf(followingStatement), newStatements);
+			List<Statement> l = new ArrayList<Statement>(statements);
+			if (l.contains(followingStatement)) {
+				l.addAll(l.indexOf(followingStatement), newStatements);
 			} else {
 				if (followingStatement != null) {
 					log("error: statement is not around anymore");
 				}
-				statements.addAll(newStatements);
+				l.addAll(newStatements);
 			}
-			if (ontology != null) {
-				for (Statement s : newStatements) {
-					if (s instanceof Sentence) {
-						ontology.commitSentence((Sentence) s);
-					}
-				}
-				ontology.getStorage().save(element);
+			statements = Collections.unmodifiableList(l);
+			if (ontology == null) return null;
+			return commitStatements(newStatements, listener);
+		}
+	}
+	
+	/**
+	 * Saves the article and hands the new sentences over to the ontology, which checks them in
+	 * the background. Must be called while holding the lock of the ontology. Returns null if
+	 * there are no new sentences, in which case there is nothing to be checked.
+	 */
+	private Future<List<Sentence>> commitStatements(List<Statement> newStatements,
+			CommitListener listener) {
+		List<Sentence> newSentences = new ArrayList<Sentence>();
+		for (Statement s : newStatements) {
+			if (s instanceof Sentence) {
+				ontology.addReferences((Sentence) s);
+				newSentences.add((Sentence) s);
 			}
 		}
+		ontology.getStorage().save(element);
+		if (newSentences.isEmpty()) return null;
+		return ontology.commitSentencesAsync(newSentences, listener);
+	}
+	
+	/**
+	 * Waits until the given commit is finished. This must not be called while holding the lock
+	 * of the ontology, which the commit needs.
+	 */
+	private void waitForCommit(Future<List<Sentence>> commit) {
+		if (commit == null) return;
+		List<Sentence> rejected;
+		try {
+			rejected = Uninterruptibles.getUninterruptibly(commit);
+		} catch (ExecutionException ex) {
+			throw Throwables.propagate(ex.getCause());
+		}
+		if (!rejected.isEmpty()) {
+			throw new InconsistencyException();
+		}
 	}
 	
 	private String getStatementsString(List<Statement> statements) {
@@ -193,11 +280,14 @@ public class Article {
 		synchronized (ontology) {
 			if (statements.contains(statement)) {
 				log("remove statement: " + statement.getText(getDefaultLanguage()));
-				statements.remove(statement);
+				List<Statement> l = new ArrayList<Statement>(statements);
+				l.remove(statement);
+				statements = Collections.unmodifiableList(l);
 			}
 			if (ontology != null) {
 				if (statement instanceof Sentence) {
 					ontology.retractSentence((Sentence) statement);
+					ontology.removeReferences((Sentence) statement);
 				}
 				ontology.getStorage().save(element);
 			}
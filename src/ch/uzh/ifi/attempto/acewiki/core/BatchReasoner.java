@@ -0,0 +1,39 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.util.Collection;
+
+/**
+ * This interface can be implemented by reasoners that can load or unload several sentences at
+ * once. The reasoner is then updated only once for all of them, instead of once per sentence.
+ */
+public interface BatchReasoner extends AceWikiReasoner {
+
+	/**
+	 * Loads the given sentences.
+	 * 
+	 * @param sentences The sentences to be loaded.
+	 */
+	public void loadSentences(Collection<Sentence> sentences);
+
+	/**
+	 * Unloads the given sentences.
+	 * 
+	 * @param sentences The sentences to be unloaded.
+	 */
+	public void unloadSentences(Collection<Sentence> sentences);
+
+}
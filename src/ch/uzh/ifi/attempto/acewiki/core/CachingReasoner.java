@@ -15,25 +15,128 @@
 package ch.uzh.ifi.attempto.acewiki.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * This reasoner class wraps another reasoner and adds caching functionality.
+ *<p>
+ * If the wrapped reasoner implements {@link SignatureAwareReasoner}, the caching reasoner keeps
+ * track of the ontology elements of the loaded sentences. Each cached result depends on the
+ * ontology elements that are connected to the elements of the query by loaded sentences. When a
+ * sentence is loaded or unloaded, only the cached results that depend on one of its elements
+ * become outdated. Otherwise, and whenever ontology elements are loaded or unloaded, all cached
+ * results become outdated.
+ *<p>
+ * The size of each cache is limited by the total weight of its entries, where the weight of an
+ * entry is the length of its list plus one. The least recently used entries are evicted when the
+ * limit is reached. The limit can be set with the ontology parameter "reasoner_cache_weight"
+ * (default: {@value #DEFAULT_CACHE_WEIGHT}). Cached lists are only softly referenced and can
+ * therefore also be reclaimed by the garbage collector when memory gets low.
+ *<p>
+ * Cached results are returned without locking. Requests that are not in the cache are forwarded
+ * to the wrapped reasoner; concurrent requests for the same result share one computation, and
+ * requests for different results can run at the same time if the wrapped reasoner allows it.
+ * Changes to the wrapped reasoner wait until running requests are finished, and vice versa.
+ *<p>
+ * Several sentences can be loaded or unloaded at once. If the wrapped reasoner does not
+ * implement {@link BatchReasoner}, they are forwarded to it one by one.
+ *<p>
+ * After each change, the cached results are precomputed by a background thread with low
+ * priority: the inferences of the wrapped reasoner (if it implements
+ * {@link PrecomputingReasoner}), and then the results for all concepts, individuals, and
+ * questions. The precomputation starts shortly after the last change, and it stops as soon as
+ * the next change happens. It can be turned off with the ontology parameter
+ * "reasoner_precompute" set to "off".
+ *<p>
+ * If the wrapped reasoner implements {@link SnapshotReasoner}, new sentences can be checked for
+ * consistency against a snapshot, without blocking the requests and changes of other threads.
  * 
  * @author Tobias Kuhn
  */
-public class CachingReasoner implements AceWikiReasoner {
+public class CachingReasoner implements BatchReasoner {
+	
+	/**
+	 * The default for the maximum total weight of the entries of each cache.
+	 */
+	public static final int DEFAULT_CACHE_WEIGHT = 100000;
+	
+	// The time in milliseconds between a change and the start of the precomputation:
+	private static final long PRECOMPUTATION_DELAY = 1000;
+	
+	// A single thread with low priority for the precomputations of all caching reasoners:
+	private static final ScheduledExecutorService precomputationExecutor =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("acewiki-precomputation")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build()
+				);
 	
 	private AceWikiReasoner wrappedReasoner;
+	private SignatureAwareReasoner signatureReasoner;
+	private BatchReasoner batchReasoner;
+	private PrecomputingReasoner precomputingReasoner;
+	private SnapshotReasoner snapshotReasoner;
 	private Ontology ontology;
 	
-	private Map<String, CachedAnswer> answerCache = new HashMap<String, CachedAnswer>();
-	private Map<Long, CachedConcepts> conCache = new HashMap<Long, CachedConcepts>();
-	private Map<Long, CachedIndividuals> indCache = new HashMap<Long, CachedIndividuals>();
-	private Map<Long, CachedConcepts> supConCache = new HashMap<Long, CachedConcepts>();
-	private Map<Long, CachedConcepts> subConCache = new HashMap<Long, CachedConcepts>();
+	// The caches are created when the reasoner is initialized:
+	private Cache<String, CachedList<AnswerElement>> answerCache;
+	private Cache<Long, CachedList<Concept>> conCache;
+	private Cache<Long, CachedList<Individual>> indCache;
+	private Cache<Long, CachedList<Concept>> supConCache;
+	private Cache<Long, CachedList<Concept>> subConCache;
+	
+	// The ontology elements of the loaded sentences, and the loaded sentences by their elements:
+	private Map<Sentence, Set<OntologyElement>> sentenceSignatures =
+			new HashMap<Sentence, Set<OntologyElement>>();
+	private Map<OntologyElement, Set<Sentence>> elementSentences =
+			new HashMap<OntologyElement, Set<Sentence>>();
+	// The loaded sentences that can affect everything:
+	private Set<Sentence> globalSentences = new HashSet<Sentence>();
+	// The connected components of the ontology elements (shared by the cached results):
+	private Map<OntologyElement, Set<OntologyElement>> components =
+			new HashMap<OntologyElement, Set<OntologyElement>>();
+	
+	// Read access to the wrapped reasoner is shared, changes are exclusive:
+	private final ReentrantReadWriteLock reasonerLock = new ReentrantReadWriteLock();
+	// Incremented (while holding the lock of this object) whenever the wrapped reasoner changes:
+	private volatile long version = 0;
+	// The requests that are currently computed, by cache and key:
+	private final ConcurrentMap<List<Object>, FutureTask<?>> pendingRequests =
+			new ConcurrentHashMap<List<Object>, FutureTask<?>>();
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	
+	// These fields are guarded by this object:
+	private boolean precomputationEnabled;
+	private boolean loaded = false;
+	private Future<?> precomputation;
 	
 	/**
 	 * Creates a new caching reasoner for the given reasoner to be wrapped.
@@ -42,10 +145,45 @@ public class CachingReasoner implements AceWikiReasoner {
 	 */
 	CachingReasoner(AceWikiReasoner wrappedReasoner) {
 		this.wrappedReasoner = wrappedReasoner;
+		if (wrappedReasoner instanceof SignatureAwareReasoner) {
+			signatureReasoner = (SignatureAwareReasoner) wrappedReasoner;
+		}
+		if (wrappedReasoner instanceof BatchReasoner) {
+			batchReasoner = (BatchReasoner) wrappedReasoner;
+		}
+		if (wrappedReasoner instanceof PrecomputingReasoner) {
+			precomputingReasoner = (PrecomputingReasoner) wrappedReasoner;
+		}
+		if (wrappedReasoner instanceof SnapshotReasoner) {
+			snapshotReasoner = (SnapshotReasoner) wrappedReasoner;
+		}
 	}
 
 	public synchronized void init(Ontology ontology) {
 		this.ontology = ontology;
+		int weight = ontology.getParameterAsInt("reasoner_cache_weight");
+		if (weight <= 0) weight = DEFAULT_CACHE_WEIGHT;
+		answerCache = createCache(weight);
+		conCache = createCache(weight);
+		indCache = createCache(weight);
+		supConCache = createCache(weight);
+		subConCache = createCache(weight);
+		String precompute = ontology.getParameter("reasoner_precompute");
+		precomputationEnabled = !"off".equalsIgnoreCase(precompute);
+	}
+	
+	private static <K, T> Cache<K, CachedList<T>> createCache(int maxWeight) {
+		// With a single segment, the weight limit applies to the cache as a whole:
+		return CacheBuilder.newBuilder()
+				.concurrencyLevel(1)
+				.maximumWeight(maxWeight)
+				.weigher(new Weigher<K, CachedList<T>>() {
+					public int weigh(K key, CachedList<T> value) {
+						return 1 + (value.list == null ? 0 : value.list.size());
+					}
+				})
+				.softValues()
+				.build();
 	}
 	
 	/**
@@ -57,8 +195,97 @@ public class CachingReasoner implements AceWikiReasoner {
 		return wrappedReasoner;
 	}
 	
-	private long getState() {
-		return ontology.getStateID();
+	/**
+	 * Returns the number of requests that were answered from the cache.
+	 * 
+	 * @return The number of cache hits.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	/**
+	 * Returns the number of requests that had to be forwarded to the wrapped reasoner.
+	 * 
+	 * @return The number of cache misses.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	/**
+	 * Returns the number of cached results that became outdated due to changes in the ontology.
+	 * 
+	 * @return The number of invalidated cached results.
+	 */
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+	
+	/**
+	 * Returns the fraction of requests that were answered from the cache.
+	 * 
+	 * @return The hit rate between 0 and 1 (1 if there were no requests yet).
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return (requests == 0 ? 1.0 : (double) hits / requests);
+	}
+	
+	/**
+	 * Returns the number of cached results that were evicted because the caches reached their
+	 * size limit or because the memory was needed by the garbage collector.
+	 * 
+	 * @return The number of evicted cached results.
+	 */
+	public long getEvictionCount() {
+		long count = 0;
+		for (Cache<?, ?> c : getCaches()) {
+			count += c.stats().evictionCount();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the number of cached results.
+	 * 
+	 * @return The number of cached results.
+	 */
+	public long getCachedResultCount() {
+		long count = 0;
+		for (Cache<?, ?> c : getCaches()) {
+			c.cleanUp();
+			count += c.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the total number of list elements of the cached results. This number can be used to
+	 * estimate the memory footprint of the caches.
+	 * 
+	 * @return The number of cached list elements.
+	 */
+	public long getCachedElementCount() {
+		long count = 0;
+		for (Cache<?, ? extends CachedList<?>> c : getCaches()) {
+			for (CachedList<?> l : c.asMap().values()) {
+				if (l.list != null) count += l.list.size();
+			}
+		}
+		return count;
+	}
+	
+	private List<Cache<?, ? extends CachedList<?>>> getCaches() {
+		List<Cache<?, ? extends CachedList<?>>> caches =
+				new ArrayList<Cache<?, ? extends CachedList<?>>>();
+		caches.add(answerCache);
+		caches.add(conCache);
+		caches.add(indCache);
+		caches.add(supConCache);
+		caches.add(subConCache);
+		return caches;
 	}
 	
 	/**
@@ -67,13 +294,8 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param question The question.
 	 * @return true if there is an up-to-date cached answer.
 	 */
-	public synchronized boolean isCachedAnswerUpToDate(Question question) {
-		CachedAnswer a = answerCache.get(question.serialize());
-		if (a != null) {
-			return a.state == getState();
-		} else {
-			return false;
-		}
+	public boolean isCachedAnswerUpToDate(Question question) {
+		return isUpToDate(answerCache.getIfPresent(question.serialize()));
 	}
 	
 	/**
@@ -83,29 +305,22 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param question The question.
 	 * @return The cached answer.
 	 */
-	public synchronized List<AnswerElement> getCachedAnswer(Question question) {
-		CachedAnswer a = answerCache.get(question.serialize());
-		if (a != null) {
-			return new ArrayList<AnswerElement>(a.list);
-		} else {
-			return null;
-		}
+	public List<AnswerElement> getCachedAnswer(Question question) {
+		return getList(answerCache.getIfPresent(question.serialize()));
 	}
 	
 	/**
 	 * Returns the answer for the given question. The cache is used if it is up-to-date.
 	 */
-	public synchronized List<AnswerElement> getAnswer(Question question) {
-		CachedAnswer a = answerCache.get(question.serialize());
-		if (a != null && a.state == getState()) {
-			return new ArrayList<AnswerElement>(a.list);
-		} else {
-			a = new CachedAnswer();
-			a.list = wrappedReasoner.getAnswer(question);
-			a.state = getState();
-			answerCache.put(question.serialize(), a);
-			return a.list;
-		}
+	public List<AnswerElement> getAnswer(final Question question) {
+		return get(answerCache, question.serialize(), new Request<AnswerElement>() {
+			List<AnswerElement> compute() {
+				return wrappedReasoner.getAnswer(question);
+			}
+			Set<OntologyElement> getElements() {
+				return getSignature(question);
+			}
+		});
 	}
 
 	/**
@@ -115,13 +330,8 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param ind The individual.
 	 * @return true if the cached concepts are up-to-date.
 	 */
-	public synchronized boolean areCachedConceptsUpToDate(Individual ind) {
-		CachedConcepts c = conCache.get(ind.getId());
-		if (c != null) {
-			return c.state == getState();
-		} else {
-			return false;
-		}
+	public boolean areCachedConceptsUpToDate(Individual ind) {
+		return isUpToDate(conCache.getIfPresent(ind.getId()));
 	}
 
 	/**
@@ -131,26 +341,19 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param ind The individual.
 	 * @return A list of the cached concepts for the given individual.
 	 */
-	public synchronized List<Concept> getCachedConcepts(Individual ind) {
-		CachedConcepts c = conCache.get(ind.getId());
-		if (c != null) {
-			return new ArrayList<Concept>(c.list);
-		} else {
-			return null;
-		}
+	public List<Concept> getCachedConcepts(Individual ind) {
+		return getList(conCache.getIfPresent(ind.getId()));
 	}
 	
-	public synchronized List<Concept> getConcepts(Individual ind) {
-		CachedConcepts c = conCache.get(ind.getId());
-		if (c != null && c.state == getState()) {
-			return new ArrayList<Concept>(c.list);
-		} else {
-			c = new CachedConcepts();
-			c.list = wrappedReasoner.getConcepts(ind);
-			c.state = getState();
-			conCache.put(ind.getId(), c);
-			return c.list;
-		}
+	public List<Concept> getConcepts(final Individual ind) {
+		return get(conCache, ind.getId(), new Request<Concept>() {
+			List<Concept> compute() {
+				return wrappedReasoner.getConcepts(ind);
+			}
+			Set<OntologyElement> getElements() {
+				return Collections.<OntologyElement>singleton(ind);
+			}
+		});
 	}
 
 	/**
@@ -160,13 +363,8 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return true if the cached individuals are up-to-date.
 	 */
-	public synchronized boolean areCachedIndividualsUpToDate(Concept concept) {
-		CachedIndividuals i = indCache.get(concept.getId());
-		if (i != null) {
-			return i.state == getState();
-		} else {
-			return false;
-		}
+	public boolean areCachedIndividualsUpToDate(Concept concept) {
+		return isUpToDate(indCache.getIfPresent(concept.getId()));
 	}
 
 	/**
@@ -176,26 +374,19 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return A list of the cached individuals for the given concept.
 	 */
-	public synchronized List<Individual> getCachedIndividuals(Concept concept) {
-		CachedIndividuals i = indCache.get(concept.getId());
-		if (i != null) {
-			return new ArrayList<Individual>(i.list);
-		} else {
-			return null;
-		}
+	public List<Individual> getCachedIndividuals(Concept concept) {
+		return getList(indCache.getIfPresent(concept.getId()));
 	}
 	
-	public synchronized List<Individual> getIndividuals(Concept concept) {
-		CachedIndividuals i = indCache.get(concept.getId());
-		if (i != null && i.state == getState()) {
-			return new ArrayList<Individual>(i.list);
-		} else {
-			i = new CachedIndividuals();
-			i.list = wrappedReasoner.getIndividuals(concept);
-			i.state = getState();
-			indCache.put(concept.getId(), i);
-			return i.list;
-		}
+	public List<Individual> getIndividuals(final Concept concept) {
+		return get(indCache, concept.getId(), new Request<Individual>() {
+			List<Individual> compute() {
+				return wrappedReasoner.getIndividuals(concept);
+			}
+			Set<OntologyElement> getElements() {
+				return Collections.<OntologyElement>singleton(concept);
+			}
+		});
 	}
 
 	/**
@@ -205,13 +396,8 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return true if the cached super-concepts are up-to-date.
 	 */
-	public synchronized boolean areCachedSuperConceptsUpToDate(Concept concept) {
-		CachedConcepts c = supConCache.get(concept.getId());
-		if (c != null) {
-			return c.state == getState();
-		} else {
-			return false;
-		}
+	public boolean areCachedSuperConceptsUpToDate(Concept concept) {
+		return isUpToDate(supConCache.getIfPresent(concept.getId()));
 	}
 
 	/**
@@ -221,26 +407,19 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return A list of the cached super-concepts for the given concept.
 	 */
-	public synchronized List<Concept> getCachedSuperConcepts(Concept concept) {
-		CachedConcepts c = supConCache.get(concept.getId());
-		if (c != null) {
-			return new ArrayList<Concept>(c.list);
-		} else {
-			return null;
-		}
+	public List<Concept> getCachedSuperConcepts(Concept concept) {
+		return getList(supConCache.getIfPresent(concept.getId()));
 	}
 	
-	public synchronized List<Concept> getSuperConcepts(Concept concept) {
-		CachedConcepts c = supConCache.get(concept.getId());
-		if (c != null && c.state == getState()) {
-			return new ArrayList<Concept>(c.list);
-		} else {
-			c = new CachedConcepts();
-			c.list = wrappedReasoner.getSuperConcepts(concept);
-			c.state = getState();
-			supConCache.put(concept.getId(), c);
-			return c.list;
-		}
+	public List<Concept> getSuperConcepts(final Concept concept) {
+		return get(supConCache, concept.getId(), new Request<Concept>() {
+			List<Concept> compute() {
+				return wrappedReasoner.getSuperConcepts(concept);
+			}
+			Set<OntologyElement> getElements() {
+				return Collections.<OntologyElement>singleton(concept);
+			}
+		});
 	}
 
 	/**
@@ -250,13 +429,8 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return true if the cached sub-concepts are up-to-date.
 	 */
-	public synchronized boolean areCachedSubConceptsUpToDate(Concept concept) {
-		CachedConcepts c = subConCache.get(concept.getId());
-		if (c != null) {
-			return c.state == getState();
-		} else {
-			return false;
-		}
+	public boolean areCachedSubConceptsUpToDate(Concept concept) {
+		return isUpToDate(subConCache.getIfPresent(concept.getId()));
 	}
 
 	/**
@@ -266,25 +440,174 @@ public class CachingReasoner implements AceWikiReasoner {
 	 * @param concept The concept.
 	 * @return A list of the cached sub-concepts for the given concept.
 	 */
-	public synchronized List<Concept> getCachedSubConcepts(Concept concept) {
-		CachedConcepts c = subConCache.get(concept.getId());
-		if (c != null) {
-			return new ArrayList<Concept>(c.list);
+	public List<Concept> getCachedSubConcepts(Concept concept) {
+		return getList(subConCache.getIfPresent(concept.getId()));
+	}
+	
+	public List<Concept> getSubConcepts(final Concept concept) {
+		return get(subConCache, concept.getId(), new Request<Concept>() {
+			List<Concept> compute() {
+				return wrappedReasoner.getSubConcepts(concept);
+			}
+			Set<OntologyElement> getElements() {
+				return Collections.<OntologyElement>singleton(concept);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the result for the given request from the given cache, or computes it if there is
+	 * no up-to-date result in the cache. Concurrent requests for the same key wait for the same
+	 * computation.
+	 */
+	private <K, T> List<T> get(final Cache<K, CachedList<T>> cache, final K key,
+			final Request<T> request) {
+		CachedList<T> c = cache.getIfPresent(key);
+		if (isUpToDate(c)) {
+			hitCount.incrementAndGet();
+			return getList(c);
+		}
+		missCount.incrementAndGet();
+
+		List<Object> pendingKey = Arrays.<Object>asList(cache, key);
+		FutureTask<List<T>> task = new FutureTask<List<T>>(new Callable<List<T>>() {
+			public List<T> call() {
+				return compute(cache, key, request);
+			}
+		});
+		@SuppressWarnings("unchecked")
+		FutureTask<List<T>> running =
+				(FutureTask<List<T>>) pendingRequests.putIfAbsent(pendingKey, task);
+		if (running == null) {
+			running = task;
+			try {
+				task.run();
+			} finally {
+				pendingRequests.remove(pendingKey, task);
+			}
+		}
+
+		List<T> list;
+		try {
+			list = running.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+			if (ex.getCause() instanceof Error) throw (Error) ex.getCause();
+			throw new RuntimeException(ex.getCause());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		}
+		return (list == null ? null : new ArrayList<T>(list));
+	}
+	
+	private <K, T> List<T> compute(Cache<K, CachedList<T>> cache, K key, Request<T> request) {
+		long v = version;
+		CachedList<T> c = new CachedList<T>();
+		reasonerLock.readLock().lock();
+		try {
+			c.list = request.compute();
+		} finally {
+			reasonerLock.readLock().unlock();
+		}
+		Set<OntologyElement> elements = request.getElements();
+		synchronized (this) {
+			c.dependencies = getDependencies(elements);
+			// The result is outdated if the reasoner was changed in the meantime:
+			c.upToDate = (v == version);
+			cache.put(key, c);
+		}
+		return c.list;
+	}
+	
+	private static boolean isUpToDate(CachedList<?> c) {
+		return c != null && c.upToDate;
+	}
+	
+	private static <T> List<T> getList(CachedList<T> c) {
+		if (c != null && c.list != null) {
+			return new ArrayList<T>(c.list);
 		} else {
 			return null;
 		}
 	}
 	
-	public synchronized List<Concept> getSubConcepts(Concept concept) {
-		CachedConcepts c = subConCache.get(concept.getId());
-		if (c != null && c.state == getState()) {
-			return new ArrayList<Concept>(c.list);
+	private Set<OntologyElement> getSignature(Sentence sentence) {
+		if (signatureReasoner == null) return null;
+		return signatureReasoner.getSignature(sentence);
+	}
+	
+	/**
+	 * Returns the ontology elements that are connected to the given elements by loaded
+	 * sentences, or null if a result about the given elements can depend on anything.
+	 */
+	private Set<OntologyElement> getDependencies(Set<OntologyElement> elements) {
+		if (elements == null || signatureReasoner == null) return null;
+		if (!globalSentences.isEmpty()) return null;
+		if (elements.size() == 1) {
+			return getComponent(elements.iterator().next());
+		}
+		Set<OntologyElement> dependencies = new HashSet<OntologyElement>();
+		for (OntologyElement oe : elements) {
+			dependencies.addAll(getComponent(oe));
+		}
+		return dependencies;
+	}
+	
+	private Set<OntologyElement> getComponent(OntologyElement element) {
+		Set<OntologyElement> component = components.get(element);
+		if (component != null) return component;
+		component = new HashSet<OntologyElement>();
+		component.add(element);
+		LinkedList<OntologyElement> queue = new LinkedList<OntologyElement>();
+		queue.add(element);
+		while (!queue.isEmpty()) {
+			Set<Sentence> sentences = elementSentences.get(queue.removeFirst());
+			if (sentences == null) continue;
+			for (Sentence s : sentences) {
+				for (OntologyElement oe : sentenceSignatures.get(s)) {
+					if (component.add(oe)) queue.add(oe);
+				}
+			}
+		}
+		component = Collections.unmodifiableSet(component);
+		for (OntologyElement oe : component) {
+			components.put(oe, component);
+		}
+		return component;
+	}
+	
+	/**
+	 * Marks the cached results as outdated that can be affected by a change that involves the
+	 * given ontology elements. If the elements are null, all cached results are marked as
+	 * outdated.
+	 */
+	private void invalidate(Set<OntologyElement> elements) {
+		if (elements == null || !globalSentences.isEmpty()) {
+			components.clear();
 		} else {
-			c = new CachedConcepts();
-			c.list = wrappedReasoner.getSubConcepts(concept);
-			c.state = getState();
-			subConCache.put(concept.getId(), c);
-			return c.list;
+			for (OntologyElement oe : elements) {
+				Set<OntologyElement> component = components.get(oe);
+				if (component == null) continue;
+				for (OntologyElement c : component) {
+					components.remove(c);
+				}
+			}
+		}
+		for (Cache<?, ? extends CachedList<?>> c : getCaches()) {
+			invalidate(c, elements);
+		}
+	}
+	
+	private void invalidate(Cache<?, ? extends CachedList<?>> cache,
+			Set<OntologyElement> elements) {
+		for (CachedList<?> c : cache.asMap().values()) {
+			if (!c.upToDate) continue;
+			if (elements == null || !globalSentences.isEmpty() || c.dependencies == null ||
+					!Collections.disjoint(c.dependencies, elements)) {
+				c.upToDate = false;
+				invalidationCount.incrementAndGet();
+			}
 		}
 	}
 
@@ -322,54 +645,276 @@ public class CachingReasoner implements AceWikiReasoner {
 	/**
 	 * Loads the reasoner or reasoner interface.
 	 */
-	public synchronized void load() {
-		wrappedReasoner.load();
+	public void load() {
+		reasonerLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				version++;
+				loaded = true;
+				schedulePrecomputation();
+				invalidate(null);
+			}
+			wrappedReasoner.load();
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
+	}
+	
+	public void loadElement(OntologyElement element) {
+		reasonerLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				invalidate(null);
+			}
+			wrappedReasoner.loadElement(element);
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
 	}
 	
-	public synchronized void loadElement(OntologyElement element) {
-		wrappedReasoner.loadElement(element);
+	public void unloadElement(OntologyElement element) {
+		reasonerLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				invalidate(null);
+			}
+			wrappedReasoner.unloadElement(element);
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
 	}
 	
-	public synchronized void unloadElement(OntologyElement element) {
-		wrappedReasoner.unloadElement(element);
+	public boolean isConsistent() {
+		reasonerLock.readLock().lock();
+		try {
+			return wrappedReasoner.isConsistent();
+		} finally {
+			reasonerLock.readLock().unlock();
+		}
 	}
 	
-	public synchronized boolean isConsistent() {
-		return wrappedReasoner.isConsistent();
+	/**
+	 * Returns a check whether the given sentences are consistent with the current state of the
+	 * wrapped reasoner. Only taking the snapshot waits for changes that are in progress; the
+	 * check itself runs without locking.
+	 * 
+	 * @param sentences The sentences to be checked.
+	 * @return The consistency check, or null if the wrapped reasoner cannot take snapshots.
+	 */
+	public Callable<Boolean> getConsistencyCheck(Collection<Sentence> sentences) {
+		if (snapshotReasoner == null) return null;
+		reasonerLock.readLock().lock();
+		try {
+			return snapshotReasoner.getConsistencyCheck(sentences);
+		} finally {
+			reasonerLock.readLock().unlock();
+		}
 	}
 	
-	public synchronized boolean isSatisfiable(Concept concept) {
-		return wrappedReasoner.isSatisfiable(concept);
+	public boolean isSatisfiable(Concept concept) {
+		reasonerLock.readLock().lock();
+		try {
+			return wrappedReasoner.isSatisfiable(concept);
+		} finally {
+			reasonerLock.readLock().unlock();
+		}
 	}
 	
-	public synchronized void loadSentence(Sentence sentence) {
-		wrappedReasoner.loadSentence(sentence);
+	public void loadSentence(Sentence sentence) {
+		Set<OntologyElement> signature = getSignature(sentence);
+		reasonerLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				addSignature(sentence, signature);
+			}
+			wrappedReasoner.loadSentence(sentence);
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
 	}
 	
-	public synchronized void unloadSentence(Sentence sentence) {
-		wrappedReasoner.unloadSentence(sentence);
+	public void unloadSentence(Sentence sentence) {
+		reasonerLock.writeLock().lock();
+		try {
+			wrappedReasoner.unloadSentence(sentence);
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				removeSignature(sentence);
+			}
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
 	}
 	
-	public synchronized void flushElements() {
-		wrappedReasoner.flushElements();
+	public void loadSentences(Collection<Sentence> sentences) {
+		Map<Sentence, Set<OntologyElement>> signatures =
+				new HashMap<Sentence, Set<OntologyElement>>();
+		for (Sentence s : sentences) {
+			signatures.put(s, getSignature(s));
+		}
+		reasonerLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				for (Sentence s : sentences) {
+					addSignature(s, signatures.get(s));
+				}
+			}
+			if (batchReasoner != null) {
+				batchReasoner.loadSentences(sentences);
+			} else {
+				for (Sentence s : sentences) {
+					wrappedReasoner.loadSentence(s);
+				}
+			}
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
 	}
 	
+	public void unloadSentences(Collection<Sentence> sentences) {
+		reasonerLock.writeLock().lock();
+		try {
+			if (batchReasoner != null) {
+				batchReasoner.unloadSentences(sentences);
+			} else {
+				for (Sentence s : sentences) {
+					wrappedReasoner.unloadSentence(s);
+				}
+			}
+			synchronized (this) {
+				version++;
+				schedulePrecomputation();
+				for (Sentence s : sentences) {
+					removeSignature(s);
+				}
+			}
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
+	}
 	
-	// Small internal classes for cached objects:
+	// These two methods have to be called while holding the lock of this object:
 	
-	private static class CachedAnswer {
-		long state = -1;
-		List<AnswerElement> list;
+	private void addSignature(Sentence sentence, Set<OntologyElement> signature) {
+		invalidate(signature);
+		if (signature == null) {
+			if (signatureReasoner != null) globalSentences.add(sentence);
+		} else if (!sentenceSignatures.containsKey(sentence)) {
+			sentenceSignatures.put(sentence, signature);
+			for (OntologyElement oe : signature) {
+				Set<Sentence> sentences = elementSentences.get(oe);
+				if (sentences == null) {
+					sentences = new HashSet<Sentence>();
+					elementSentences.put(oe, sentences);
+				}
+				sentences.add(sentence);
+			}
+		}
 	}
 	
-	private static class CachedIndividuals {
-		long state = -1;
-		List<Individual> list;
+	private void removeSignature(Sentence sentence) {
+		Set<OntologyElement> signature = sentenceSignatures.remove(sentence);
+		if (signature == null) {
+			invalidate(null);
+			globalSentences.remove(sentence);
+			return;
+		}
+		invalidate(signature);
+		for (OntologyElement oe : signature) {
+			Set<Sentence> sentences = elementSentences.get(oe);
+			if (sentences == null) continue;
+			sentences.remove(sentence);
+			if (sentences.isEmpty()) elementSentences.remove(oe);
+		}
+	}
+	
+	public void flushElements() {
+		reasonerLock.writeLock().lock();
+		try {
+			wrappedReasoner.flushElements();
+		} finally {
+			reasonerLock.writeLock().unlock();
+		}
+	}
+	
+	
+	/**
+	 * Schedules the precomputation for the current state of the wrapped reasoner. A scheduled or
+	 * running precomputation for an earlier state is cancelled. This method has to be called
+	 * while holding the lock of this object.
+	 */
+	private void schedulePrecomputation() {
+		if (!precomputationEnabled || !loaded) return;
+		if (precomputation != null) precomputation.cancel(false);
+		final long v = version;
+		precomputation = precomputationExecutor.schedule(new Runnable() {
+			public void run() {
+				try {
+					precompute(v);
+				} catch (RuntimeException ex) {
+					ontology.log("precomputation failed: " + ex);
+				}
+			}
+		}, PRECOMPUTATION_DELAY, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Precomputes the inferences of the wrapped reasoner and the cached results. The
+	 * precomputation stops when the wrapped reasoner no longer has the given version.
+	 */
+	private void precompute(long v) {
+		if (precomputingReasoner != null) {
+			reasonerLock.readLock().lock();
+			try {
+				if (v != version) return;
+				precomputingReasoner.precomputeInferences();
+			} finally {
+				reasonerLock.readLock().unlock();
+			}
+		}
+		for (OntologyElement oe : ontology.getOntologyElements()) {
+			if (v != version) return;
+			if (oe instanceof Concept) {
+				Concept c = (Concept) oe;
+				getSuperConcepts(c);
+				getSubConcepts(c);
+				getIndividuals(c);
+			} else if (oe instanceof Individual) {
+				getConcepts((Individual) oe);
+			}
+			for (Sentence s : oe.getArticle().getSentences()) {
+				if (v != version) return;
+				if (s instanceof Question) {
+					getAnswer((Question) s);
+				}
+			}
+		}
+		ontology.log("precomputation finished");
+	}
+	
+	
+	// Small internal classes for cached objects and requests:
+	
+	private static class CachedList<T> {
+		volatile boolean upToDate = true;
+		List<T> list;
+		// The ontology elements the list depends on, or null if it depends on everything:
+		Set<OntologyElement> dependencies;
 	}
 	
-	private static class CachedConcepts {
-		long state = -1;
-		List<Concept> list;
+	private static abstract class Request<T> {
+		abstract List<T> compute();
+		// The ontology elements of the request:
+		abstract Set<OntologyElement> getElements();
 	}
 
 }
@@ -0,0 +1,35 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.util.List;
+
+/**
+ * This interface is used to get informed when sentences that have been added to an article have
+ * been checked for consistency.
+ */
+public interface CommitListener {
+
+	/**
+	 * This method is called when the consistency check of the given sentences is finished. It is
+	 * called by the thread that runs the checks. Sentences that have been removed from their
+	 * article before they were checked are neither integrated nor rejected.
+	 * 
+	 * @param integrated The sentences that have been integrated.
+	 * @param rejected The sentences that have been rejected because they are inconsistent.
+	 */
+	public void commitFinished(List<Sentence> integrated, List<Sentence> rejected);
+
+}
@@ -15,20 +15,42 @@
 package ch.uzh.ifi.attempto.acewiki.core;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
- * This class is the default implementation of a word index.
+ * This class is the default implementation of a word index. The index can be read while it is
+ * changed.
+ * <p>
+ * For the search, the word forms are normalized (lower case, underscores replaced by blanks) and
+ * all their substrings of up to three characters are indexed. A search text of up to three
+ * characters can thereby be looked up directly. For longer search texts, only the elements that
+ * contain the rarest of its three-character substrings are checked.
  * 
  * @author Tobias Kuhn
  */
 //TODO Different ontology elements should be allowed to have overlapping word forms.
 public class DefaultWordIndex implements WordIndex {
 	
-	private Map<String, OntologyElement> wordIndex = new TreeMap<String, OntologyElement>();
-	private List<OntologyElement> elements = new ArrayList<OntologyElement>();
+	// The length of the longest substrings of the word forms that are indexed:
+	private static final int GRAM_LENGTH = 3;
+	
+	private Map<String, OntologyElement> wordIndex =
+			new ConcurrentSkipListMap<String, OntologyElement>();
+	private Set<OntologyElement> elements =
+			Collections.newSetFromMap(new ConcurrentHashMap<OntologyElement, Boolean>());
+	
+	private Map<OntologyElement, String[]> normalizedWords =
+			new ConcurrentHashMap<OntologyElement, String[]>();
+	private Map<String, Set<OntologyElement>> gramIndex =
+			new ConcurrentHashMap<String, Set<OntologyElement>>();
 	
 	public void elementAdded(OntologyElement element) {
 		if (elements.contains(element)) {
@@ -46,10 +68,12 @@ public class DefaultWordIndex implements WordIndex {
 					);
 			}
 		}
+		addGrams(element);
 	}
 	
 	public void elementRemoved(OntologyElement element) {
 		elements.remove(element);
+		removeGrams(element);
 		for (String word : element.getWords()) {
 			if (word == null) continue;
 			wordIndex.remove(word);
@@ -57,6 +81,7 @@ public class DefaultWordIndex implements WordIndex {
 	}
 	
 	public void elementBeforeChange(OntologyElement element) {
+		removeGrams(element);
 		for (String word : element.getWords()) {
 			if (word != null) {
 				wordIndex.remove(word);
@@ -76,6 +101,7 @@ public class DefaultWordIndex implements WordIndex {
 				}
 			}
 		}
+		addGrams(element);
 	}
 	
 	public OntologyElement getElement(String word) {
@@ -84,18 +110,144 @@ public class DefaultWordIndex implements WordIndex {
 
 	public List<OntologyElement> searchForElements(String searchText) {
 		List<OntologyElement> searchResult = new ArrayList<OntologyElement>();
-		String s = searchText.toLowerCase().replace('_', ' ');
-		for (OntologyElement e : elements) {
-			for (String w : e.getWords()) {
-				if (w == null) continue;
-				if (w.toLowerCase().replace('_', ' ').contains(s)) {
-					searchResult.add(e);
-					break;
-				}
-			}
+		String s = normalize(searchText);
+		for (OntologyElement e : getCandidates(s)) {
+			if (getMatchRank(e, s) > -1) searchResult.add(e);
 		}
 		LanguageUtils.sortOntologyElements(searchResult);
 		return searchResult;
 	}
+	
+	public int countElements(String searchText) {
+		String s = normalize(searchText);
+		int count = 0;
+		for (OntologyElement e : getCandidates(s)) {
+			if (getMatchRank(e, s) > -1) count++;
+		}
+		return count;
+	}
+	
+	public List<OntologyElement> searchForElements(String searchText, int start, int limit) {
+		List<OntologyElement> searchResult = new ArrayList<OntologyElement>();
+		if (limit <= 0) return searchResult;
+		String s = normalize(searchText);
+		Comparator<OntologyElement> comparator = LanguageUtils.getOntologyElementsComparator();
+		int k = (int) Math.min((long) start + limit, Integer.MAX_VALUE);
+		
+		// The heap keeps the k best matches, with the worst of them at the top:
+		PriorityQueue<RankedElement> heap = new PriorityQueue<RankedElement>(
+				Math.min(k, 1024) + 1,
+				Collections.reverseOrder()
+			);
+		for (OntologyElement e : getCandidates(s)) {
+			int rank = getMatchRank(e, s);
+			if (rank < 0) continue;
+			RankedElement r = new RankedElement(e, rank, comparator);
+			if (heap.size() < k) {
+				heap.add(r);
+			} else if (r.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(r);
+			}
+		}
+		
+		List<RankedElement> best = new ArrayList<RankedElement>(heap);
+		Collections.sort(best);
+		for (int i = start ; i < best.size() ; i++) {
+			searchResult.add(best.get(i).element);
+		}
+		return searchResult;
+	}
+	
+	private static String normalize(String text) {
+		return text.toLowerCase().replace('_', ' ');
+	}
+	
+	private synchronized void addGrams(OntologyElement element) {
+		List<String> words = new ArrayList<String>();
+		for (String w : element.getWords()) {
+			if (w != null) words.add(normalize(w));
+		}
+		normalizedWords.put(element, words.toArray(new String[words.size()]));
+		for (String w : words) {
+			for (int i = 0 ; i < w.length() ; i++) {
+				for (int j = i + 1 ; j <= i + GRAM_LENGTH && j <= w.length() ; j++) {
+					String gram = w.substring(i, j);
+					Set<OntologyElement> gramElements = gramIndex.get(gram);
+					if (gramElements == null) {
+						gramElements = Collections.newSetFromMap(
+								new ConcurrentHashMap<OntologyElement, Boolean>()
+							);
+						gramIndex.put(gram, gramElements);
+					}
+					gramElements.add(element);
+				}
+			}
+		}
+	}
+	
+	private synchronized void removeGrams(OntologyElement element) {
+		String[] words = normalizedWords.remove(element);
+		if (words == null) return;
+		for (String w : words) {
+			for (int i = 0 ; i < w.length() ; i++) {
+				for (int j = i + 1 ; j <= i + GRAM_LENGTH && j <= w.length() ; j++) {
+					String gram = w.substring(i, j);
+					Set<OntologyElement> gramElements = gramIndex.get(gram);
+					if (gramElements == null) continue;
+					gramElements.remove(element);
+					if (gramElements.isEmpty()) gramIndex.remove(gram);
+				}
+			}
+		}
+	}
+	
+	// Returns the elements that possibly match the given normalized search text:
+	private Collection<OntologyElement> getCandidates(String s) {
+		if (s.length() == 0) return elements;
+		Set<OntologyElement> candidates = null;
+		for (int i = 0 ; i + Math.min(GRAM_LENGTH, s.length()) <= s.length() ; i++) {
+			String gram = s.substring(i, Math.min(i + GRAM_LENGTH, s.length()));
+			Set<OntologyElement> gramElements = gramIndex.get(gram);
+			if (gramElements == null) return Collections.emptySet();
+			if (candidates == null || gramElements.size() < candidates.size()) {
+				candidates = gramElements;
+			}
+		}
+		return candidates;
+	}
+	
+	// Returns 0 if a word form of the element starts with the given normalized search text, 1 if
+	// a word form contains it, and -1 otherwise:
+	private int getMatchRank(OntologyElement element, String s) {
+		String[] words = normalizedWords.get(element);
+		if (words == null) return -1;
+		int rank = -1;
+		for (String w : words) {
+			if (w.startsWith(s)) return 0;
+			if (rank < 0 && w.contains(s)) rank = 1;
+		}
+		return rank;
+	}
+	
+	
+	private static class RankedElement implements Comparable<RankedElement> {
+		
+		final OntologyElement element;
+		final int rank;
+		final Comparator<OntologyElement> comparator;
+		
+		RankedElement(OntologyElement element, int rank, Comparator<OntologyElement> comparator) {
+			this.element = element;
+			this.rank = rank;
+			this.comparator = comparator;
+		}
+		
+		public int compareTo(RankedElement other) {
+			if (rank != other.rank) return rank - other.rank;
+			return comparator.compare(element, other.element);
+		}
+		
+	}
 
 }
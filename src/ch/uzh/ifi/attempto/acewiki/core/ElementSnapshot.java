@@ -0,0 +1,196 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * This class represents a binary snapshot of all serialized ontology elements of an ontology in a
+ * single file. The file starts with a header and an index that contains the id, offset and length
+ * of each element, followed by the UTF-8 bytes of the serialized elements. The file is
+ * memory-mapped when it is opened, and the elements are only decoded when they are requested.
+ */
+class ElementSnapshot {
+
+	private static final int MAGIC = 0x41574B53;  // "AWKS"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int INDEX_ENTRY_SIZE = 20;
+
+	private final ByteBuffer buffer;
+	private final SortedMap<Long, long[]> index = new TreeMap<Long, long[]>();
+
+	private ElementSnapshot(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a snapshot file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported snapshot version: " + buffer.getInt(4));
+		}
+		int count = buffer.getInt(8);
+		long dataStart = HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE;
+		if (count < 0 || dataStart > buffer.limit()) {
+			throw new IOException("Incomplete snapshot file");
+		}
+		for (int i = 0 ; i < count ; i++) {
+			int p = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+			long id = buffer.getLong(p);
+			long offset = dataStart + buffer.getLong(p + 8);
+			int length = buffer.getInt(p + 16);
+			if (length < 0 || offset < dataStart || offset + length > buffer.limit()) {
+				throw new IOException("Incomplete snapshot file");
+			}
+			index.put(id, new long[] {offset, length});
+		}
+	}
+
+	/**
+	 * Opens the given snapshot file by mapping it into memory and reading its index.
+	 * 
+	 * @param file The snapshot file.
+	 * @return The snapshot object.
+	 * @throws IOException if the file cannot be read or is not a valid snapshot.
+	 */
+	static ElementSnapshot open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ElementSnapshot(buffer);
+		} finally {
+			// The mapping stays valid after the file is closed.
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes a new snapshot file for the given ontology elements. The file is first written under
+	 * a temporary name and then renamed, so that an existing snapshot file is only replaced by a
+	 * complete one.
+	 * 
+	 * @param file The snapshot file.
+	 * @param elements The ontology elements.
+	 * @throws IOException if the file cannot be written.
+	 */
+	static void write(File file, List<OntologyElement> elements) throws IOException {
+		List<Long> ids = new ArrayList<Long>();
+		List<byte[]> data = new ArrayList<byte[]>();
+		for (OntologyElement oe : elements) {
+			ids.add(oe.getId());
+			data.add(FileBasedStorage.serialize(oe).getBytes("UTF-8"));
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(tmp);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ids.size());
+			long offset = 0;
+			for (int i = 0 ; i < ids.size() ; i++) {
+				out.writeLong(ids.get(i));
+				out.writeLong(offset);
+				out.writeInt(data.get(i).length);
+				offset += data.get(i).length;
+			}
+			for (byte[] d : data) {
+				out.write(d);
+			}
+			out.flush();
+			fileOut.getChannel().force(false);
+		} finally {
+			fileOut.close();
+		}
+		file.delete();
+		if (!tmp.renameTo(file)) {
+			throw new IOException("Cannot rename snapshot file: " + tmp);
+		}
+	}
+
+	/**
+	 * Returns whether the snapshot contains an ontology element with the given id.
+	 * 
+	 * @param id The id.
+	 * @return true if the snapshot contains the element.
+	 */
+	boolean contains(long id) {
+		return index.containsKey(id);
+	}
+
+	/**
+	 * Returns the number of ontology elements in the snapshot.
+	 * 
+	 * @return The number of elements.
+	 */
+	int size() {
+		return index.size();
+	}
+
+	/**
+	 * Returns the serialized ontology element with the given id, or null if the snapshot does not
+	 * contain such an element. This method can be called concurrently.
+	 * 
+	 * @param id The id.
+	 * @return The serialized ontology element.
+	 */
+	String get(long id) {
+		long[] entry = index.get(id);
+		if (entry == null) return null;
+		byte[] bytes = new byte[(int) entry[1]];
+		ByteBuffer b = buffer.duplicate();
+		b.position((int) entry[0]);
+		b.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Returns sources for all ontology elements of the snapshot, sorted by their ids. Each source
+	 * decodes the respective element when it is called.
+	 * 
+	 * @return The sources of the serialized ontology elements.
+	 */
+	SortedMap<Long, Callable<String>> getSources() {
+		SortedMap<Long, Callable<String>> sources = new TreeMap<Long, Callable<String>>();
+		for (final Long id : index.keySet()) {
+			sources.put(id, new Callable<String>() {
+				public String call() {
+					return get(id);
+				}
+			});
+		}
+		return sources;
+	}
+
+}
@@ -15,6 +15,7 @@
 package ch.uzh.ifi.attempto.acewiki.core;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -24,8 +25,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements persistent storage features for AceWiki data on the basis of a simple file
@@ -42,6 +57,14 @@ public class FileBasedStorage implements AceWikiStorage {
 	private String dir;
 	private final List<Ontology> incompleteOntologies = new ArrayList<Ontology>();
 
+	// The serialized forms of the ontology elements as they are currently stored in the files:
+	private final Map<OntologyElement, String> storedForms =
+			new ConcurrentHashMap<OntologyElement, String>();
+	private final AtomicLong skippedWrites = new AtomicLong();
+
+	// The names of the ontologies that have an up-to-date snapshot file:
+	private final Set<String> snapshotOntologies = new HashSet<String>();
+
 	/**
 	 * Creates a new storage object.
 	 * 
@@ -53,6 +76,15 @@ public class FileBasedStorage implements AceWikiStorage {
 		if (!d.exists()) d.mkdir();
 	}
 
+	/**
+	 * Returns the path of the directory at which the ontologies are stored.
+	 * 
+	 * @return The path of the data directory.
+	 */
+	String getDirectory() {
+		return dir;
+	}
+
 	/**
 	 * Returns the ontology with the given name (or creates an empty ontology if the ontology
 	 * cannot be found). A parameter map is used for ontology parameters. When the ontology with
@@ -69,6 +101,14 @@ public class FileBasedStorage implements AceWikiStorage {
 	 * "owl_profile": Sets an OWL profile that defines which statements are used for reasoning.
 	 *     Possible values are "OWL2Full" (default), "OWL2EL", "OWL2QL", and "OWL2RL". Note that
 	 *     the global restrictions of the EL profile are not checked.
+	 * "load_threads": The number of threads that are used to read and deserialize the ontology
+	 *     elements when the ontology is loaded. The default is the number of available processors.
+	 * "reasoner_cache_weight": The maximum total weight of each cache of the caching reasoner,
+	 *     where each cached result weighs the length of its list plus one. The default is 100000.
+	 * "reasoner_precompute": Whether the reasoning results are precomputed in the background
+	 *     after each change, "on" (default) or "off".
+	 * "reasoner_replicas": The number of read-only reasoner instances that answer queries in
+	 *     parallel, which are supported for HermiT and Pellet. The default is 0 (no replicas).
 	 * 
 	 * @param name The name of the ontology.
 	 * @param parameters The parameters.
@@ -92,27 +132,88 @@ public class FileBasedStorage implements AceWikiStorage {
 		System.err.println("Loading '" + name + "'");
 		log.info("Loading: '{}'", name);
 
+		long start = System.nanoTime();
+		readOntologyElements(ontology);
+		long elementsTime = System.nanoTime() - start;
+
+		incompleteOntologies.remove(ontology);
+
+		// The ontology elements have already been loaded into the reasoner when they were
+		// registered. The sentences are collected and then loaded all at once:
+		ontology.log("loading statements");
+		System.err.print("Statements: ");
+		start = System.nanoTime();
+		List<OntologyElement> elements = ontology.getOntologyElements();
+		List<Sentence> sentences = new ArrayList<Sentence>();
+		ConsoleProgressBar pb2 = new ConsoleProgressBar(elements.size());
+		for (OntologyElement oe : elements) {
+			pb2.addOne();
+			for (Sentence s : oe.getArticle().getSentences()) {
+				if (s.isReasonable() && s.isIntegrated()) {
+					sentences.add(s);
+				}
+			}
+		}
+		pb2.complete();
+		long sentencesTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		ontology.getReasoner().loadSentences(sentences);
+		long axiomsTime = System.nanoTime() - start;
+		save(elements);
+		loadedElementsSaved(ontology);
+
+		if (ontology.get(0) == null) {
+			OntologyElement mainPage = GeneralTopic.makeMain("acewiki_page_main");
+			mainPage.initId(0);
+			ontology.register(mainPage);
+		}
+
+		start = System.nanoTime();
+		ontology.getReasoner().load();
+		long reasonerTime = System.nanoTime() - start;
+
+		String times = "elements: " + elementsTime / 1000000 + " ms, " +
+				"statements: " + sentencesTime / 1000000 + " ms, " +
+				"axioms: " + axiomsTime / 1000000 + " ms, " +
+				"reasoner: " + reasonerTime / 1000000 + " ms";
+		ontology.log("loading times: " + times);
+		log.info("Loaded '{}' ({})", name, times);
+
+		return ontology;
+	}
+
+	/**
+	 * Reads the ontology elements of the given ontology from the data files and registers them.
+	 * 
+	 * @param ontology The ontology, which is still empty.
+	 */
+	void readOntologyElements(Ontology ontology) {
+		String name = ontology.getName();
 		File dataDir = new File(dir + "/" + name);
 		File dataFile = new File(dir + "/" + name + ".acewikidata");
-		if (dataDir.exists()) {
+		ElementSnapshot snapshot = openSnapshot(ontology, dataDir);
+		if (snapshot != null) {
+			ontology.log("loading snapshot");
 			System.err.print("Entities:   ");
-			ConsoleProgressBar pb1 = new ConsoleProgressBar(dataDir.listFiles().length);
-			for (File file : dataDir.listFiles()) {
-				pb1.addOne();
+			ConsoleProgressBar pb1 = new ConsoleProgressBar(snapshot.size());
+			loadOntologyElements(snapshot.getSources(), ontology, pb1);
+			pb1.complete();
+		} else if (dataDir.exists()) {
+			SortedMap<Long, Callable<String>> sources = new TreeMap<Long, Callable<String>>();
+			for (final File file : dataDir.listFiles()) {
 				try {
-					long id = new Long(file.getName());
-					FileInputStream in = new FileInputStream(file);
-					byte[] bytes = new byte[in.available()];
-					in.read(bytes);
-					in.close();
-					String s = new String(bytes, "UTF-8");
-					loadOntologyElement(s, id, ontology);
+					sources.put(new Long(file.getName()), new Callable<String>() {
+						public String call() throws IOException {
+							return readFile(file);
+						}
+					});
 				} catch (NumberFormatException ex) {
 					ontology.log("ignoring file: " + file.getName());
-				} catch (IOException ex) {
-					ontology.log("cannot read file: " + file.getName());
 				}
 			}
+			System.err.print("Entities:   ");
+			ConsoleProgressBar pb1 = new ConsoleProgressBar(sources.size());
+			loadOntologyElements(sources, ontology, pb1);
 			pb1.complete();
 		} else if (dataFile.exists()) {
 			System.err.print("Entities:   ");
@@ -120,25 +221,25 @@ public class FileBasedStorage implements AceWikiStorage {
 			try {
 				BufferedReader in = new BufferedReader(new FileReader(dataFile));
 				pb1 = new ConsoleProgressBar(dataFile.length());
-				String s = "";
+				StringBuilder s = new StringBuilder();
 				String line = in.readLine();
 				long id = -1;
 				while (line != null) {
 					pb1.add(line.length() + 1);
-					if (line.matches("\\s*")) {
+					if (line.trim().length() == 0) {
 						// empty line
 						if (s.length() > 0) {
-							loadOntologyElement(s, id, ontology);
-							s = "";
+							loadOntologyElement(s.toString(), id, ontology);
+							s.setLength(0);
 							id = -1;
 						}
-					} else if (line.matches("[0-9]+") && s.length() == 0) {
+					} else if (s.length() == 0 && isNumber(line)) {
 						// line with id
 						id = new Long(line);
 					} else if (line.startsWith("%")) {
 						// comment
 					} else {
-						s += line + "\n";
+						s.append(line).append("\n");
 					}
 					line = in.readLine();
 				}
@@ -150,34 +251,153 @@ public class FileBasedStorage implements AceWikiStorage {
 		} else {
 			ontology.log("no data found; blank ontology is created");
 		}
+	}
 
-		incompleteOntologies.remove(ontology);
+	/**
+	 * Opens the snapshot file of the given ontology if it exists and is up-to-date. The snapshot
+	 * is only used if it is at least as new as the data directory and all files in it, and if it
+	 * contains exactly the elements of the data directory.
+	 * 
+	 * @param ontology The ontology.
+	 * @param dataDir The data directory of the ontology.
+	 * @return The snapshot, or null if no up-to-date snapshot exists.
+	 */
+	private ElementSnapshot openSnapshot(Ontology ontology, File dataDir) {
+		File snapshotFile = new File(dir + "/" + ontology.getName() + ".snapshot");
+		if (!snapshotFile.exists() || !dataDir.exists()) return null;
 
-		ontology.log("loading statements");
-		System.err.print("Statements: ");
-		List<OntologyElement> elements = ontology.getOntologyElements();
-		ConsoleProgressBar pb2 = new ConsoleProgressBar(elements.size());
-		for (OntologyElement oe : elements) {
-			pb2.addOne();
-			ontology.getReasoner().loadElement(oe);
-			for (Sentence s : oe.getArticle().getSentences()) {
-				if (s.isReasonable() && s.isIntegrated()) {
-					ontology.getReasoner().loadSentence(s);
-				}
+		long time = snapshotFile.lastModified();
+		if (dataDir.lastModified() > time) return null;
+		ElementSnapshot snapshot;
+		try {
+			snapshot = ElementSnapshot.open(snapshotFile);
+		} catch (IOException ex) {
+			ontology.log("cannot read snapshot: " + ex.getMessage());
+			return null;
+		}
+		int count = 0;
+		for (File file : dataDir.listFiles()) {
+			if (!isNumber(file.getName())) continue;
+			if (file.lastModified() > time || !snapshot.contains(Long.parseLong(file.getName()))) {
+				ontology.log("snapshot is outdated");
+				return null;
 			}
-			save(oe);
+			count++;
 		}
-		pb2.complete();
+		if (count != snapshot.size()) {
+			ontology.log("snapshot is outdated");
+			return null;
+		}
+		synchronized (snapshotOntologies) {
+			snapshotOntologies.add(ontology.getName());
+		}
+		return snapshot;
+	}
 
-		if (ontology.get(0) == null) {
-			OntologyElement mainPage = GeneralTopic.makeMain("acewiki_page_main");
-			mainPage.initId(0);
-			ontology.register(mainPage);
+	private static boolean isNumber(String s) {
+		if (s.length() == 0) return false;
+		for (int i = 0 ; i < s.length() ; i++) {
+			if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
 		}
+		return true;
+	}
 
-		ontology.getReasoner().load();
+	/**
+	 * Deletes the snapshot file of the given ontology, if there is one, because the data directory
+	 * is about to change.
+	 * 
+	 * @param name The name of the ontology.
+	 */
+	private void invalidateSnapshot(String name) {
+		synchronized (snapshotOntologies) {
+			if (snapshotOntologies.remove(name)) {
+				(new File(dir + "/" + name + ".snapshot")).delete();
+			}
+		}
+	}
 
-		return ontology;
+	/**
+	 * Loads the ontology elements from the given sources, which return the serialized elements.
+	 * The sources are read and deserialized in parallel by a pool of worker threads, but the
+	 * resulting ontology elements are registered one after the other in the order of their ids.
+	 * 
+	 * @param sources The sources of the serialized ontology elements, sorted by their ids.
+	 * @param ontology The ontology at which the ontology elements should be registered.
+	 * @param progressBar The progress bar that is increased for each loaded element.
+	 */
+	void loadOntologyElements(SortedMap<Long, Callable<String>> sources, final Ontology ontology,
+			ConsoleProgressBar progressBar) {
+		int threads = ontology.getParameterAsInt("load_threads");
+		if (threads < 1) threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "acewiki-loader-" + ontology.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		// Only a limited number of files is read ahead so that the memory consumption does not
+		// depend on the size of the ontology:
+		int maxPending = threads * 16;
+		LinkedList<Future<OntologyElement>> pending = new LinkedList<Future<OntologyElement>>();
+		Iterator<Map.Entry<Long, Callable<String>>> sourceIterator = sources.entrySet().iterator();
+		try {
+			while (sourceIterator.hasNext() || !pending.isEmpty()) {
+				while (sourceIterator.hasNext() && pending.size() < maxPending) {
+					final Map.Entry<Long, Callable<String>> entry = sourceIterator.next();
+					pending.add(executor.submit(new Callable<OntologyElement>() {
+						public OntologyElement call() {
+							String s;
+							try {
+								s = entry.getValue().call();
+							} catch (Exception ex) {
+								ontology.log("cannot read ontology element: " + entry.getKey());
+								return null;
+							}
+							OntologyElement oe =
+									deserializeOntologyElement(s, entry.getKey(), ontology);
+							if (oe != null) elementLoaded(oe, s);
+							return oe;
+						}
+					}));
+				}
+				OntologyElement oe = pending.removeFirst().get();
+				if (oe != null) {
+					ontology.register(oe);
+				}
+				progressBar.addOne();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Loading of ontology interrupted", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Failed to load ontology element", ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the complete content of the given file as a UTF-8 string.
+	 * 
+	 * @param file The file.
+	 * @return The content of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static String readFile(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
 	}
 
 	/**
@@ -188,12 +408,29 @@ public class FileBasedStorage implements AceWikiStorage {
 	 * @param ontology The ontology at which the ontology element should be registered.
 	 */
 	private static void loadOntologyElement(String serializedElement, long id, Ontology ontology) {
+		OntologyElement oe = deserializeOntologyElement(serializedElement, id, ontology);
+		if (oe != null) {
+			ontology.register(oe);
+		}
+	}
+
+	/**
+	 * Creates an ontology element from its serialized form without registering it. This method
+	 * can be called concurrently for different elements of the same ontology.
+	 * 
+	 * @param serializedElement The serialized ontology element.
+	 * @param id The id of the ontology element.
+	 * @param ontology The ontology of the ontology element.
+	 * @return The new ontology element, or null if it cannot be deserialized.
+	 */
+	private static OntologyElement deserializeOntologyElement(String serializedElement, long id,
+			Ontology ontology) {
 		final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileBasedStorage.class);
 		
 		List<String> lines = new ArrayList<String>(Arrays.asList(serializedElement.split("\n")));
 		if (lines.size() == 0 || !lines.get(0).startsWith("type:")) {
 			log.warn("Cannot read ontology element (missing 'type')");
-			return;
+			return null;
 		}
 		String type = lines.remove(0).substring("type:".length());
 		OntologyElement oe = ontology.getEngine().createOntologyElement(type);
@@ -204,24 +441,22 @@ public class FileBasedStorage implements AceWikiStorage {
 			oe = GeneralTopic.makeMain("acewiki_page_main");
 		}
 
-		if (oe != null) {
-			if (lines.size() == 0 || !lines.get(0).startsWith("words:")) {
-				log.warn("Missing 'words' for ontology element: {}", oe);
-			} else {
-				String serializedWords = lines.remove(0).substring("words:".length());
-				ontology.change(oe, serializedWords);
-			}
+		if (oe == null) {
+			log.warn("Failed to load ontology element with id {}", id);
+			return null;
 		}
 
-		if (oe != null) {
-			oe.initOntology(ontology);
-			oe.initArticle(loadArticle(lines, oe));
-			oe.initId(id);
-			ontology.register(oe);
+		if (lines.size() == 0 || !lines.get(0).startsWith("words:")) {
+			log.warn("Missing 'words' for ontology element: {}", oe);
 		} else {
-			log.warn("Failed to load ontology element with id {}", id);
+			// The element is not yet registered, so the words can be set directly:
+			oe.setWords(lines.remove(0).substring("words:".length()));
 		}
-		return;
+
+		oe.initOntology(ontology);
+		oe.initArticle(loadArticle(lines, oe));
+		oe.initId(id);
+		return oe;
 	}
 
 	private static Article loadArticle(List<String> lines, OntologyElement element) {
@@ -293,20 +528,133 @@ public class FileBasedStorage implements AceWikiStorage {
 		if (!(new File(dir)).exists()) (new File(dir)).mkdir();
 		if (!(new File(dir + "/" + name)).exists()) (new File(dir + "/" + name)).mkdir();
 
+		invalidateSnapshot(name);
+
 		if (!o.contains(oe)) {
 			(new File(dir + "/" + name + "/" + oe.getId())).delete();
+			storedForms.remove(oe);
+			return;
+		}
+
+		// Files whose content would not change are not written again:
+		String serialized = serialize(oe);
+		if (serialized.equals(storedForms.get(oe))) {
+			addSkippedWrite();
 			return;
 		}
 
 		try {
 			FileOutputStream out = new FileOutputStream(dir + "/" + name + "/" + oe.getId());
-			out.write(serialize(oe).getBytes("UTF-8"));
+			out.write(serialized.getBytes("UTF-8"));
 			out.close();
+			storedForms.put(oe, serialized);
 		} catch (IOException ex) {
 			ex.printStackTrace();
 		}
 	}
 
+	/**
+	 * This method is called when the ontology elements of a newly loaded ontology have been saved
+	 * after the loading was completed.
+	 * 
+	 * @param ontology The ontology.
+	 */
+	void loadedElementsSaved(Ontology ontology) {
+	}
+
+	/**
+	 * Saves the given ontology elements.
+	 * 
+	 * @param elements The ontology elements to be saved.
+	 */
+	void save(List<OntologyElement> elements) {
+		for (OntologyElement oe : elements) {
+			save(oe);
+		}
+	}
+
+	/**
+	 * Returns whether the given ontology is currently being loaded. The elements of such an
+	 * ontology are not saved.
+	 * 
+	 * @param ontology The ontology.
+	 * @return true if the ontology is being loaded.
+	 */
+	synchronized boolean isIncomplete(Ontology ontology) {
+		return incompleteOntologies.contains(ontology);
+	}
+
+	/**
+	 * This method is called for each ontology element that has been deserialized during the
+	 * loading of an ontology. The element is not yet registered at this point.
+	 * 
+	 * @param element The ontology element.
+	 * @param serialized The serialized form from which the element was created.
+	 */
+	void elementLoaded(OntologyElement element, String serialized) {
+		storedForms.put(element, serialized);
+	}
+
+	/**
+	 * Increases the counter of skipped writes.
+	 */
+	void addSkippedWrite() {
+		skippedWrites.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of times an ontology element was not written to its file because its
+	 * serialized form has not changed since it was last loaded or saved.
+	 * 
+	 * @return The number of skipped writes.
+	 */
+	public long getSkippedWriteCount() {
+		return skippedWrites.get();
+	}
+
+	/**
+	 * Writes a snapshot file for each loaded ontology, which allows for a faster startup next
+	 * time. The snapshot is only used as long as the data directory is not changed. The loaded
+	 * ontologies are closed first, so that their pending commits are saved.
+	 */
+	public void close() {
+		List<Ontology> loadedOntologies = closeOntologies();
+		for (Ontology o : loadedOntologies) {
+			if (isIncomplete(o)) continue;
+			File dataDir = new File(dir + "/" + o.getName());
+			if (!dataDir.exists()) continue;
+			try {
+				ElementSnapshot.write(
+						new File(dir + "/" + o.getName() + ".snapshot"),
+						o.getOntologyElements()
+					);
+				synchronized (snapshotOntologies) {
+					snapshotOntologies.add(o.getName());
+				}
+				o.log("snapshot written");
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Closes the loaded ontologies, which waits until the sentences they are still checking are
+	 * saved. This has to be done before the files of this storage are closed or written.
+	 * 
+	 * @return The loaded ontologies.
+	 */
+	List<Ontology> closeOntologies() {
+		List<Ontology> loadedOntologies;
+		synchronized (this) {
+			loadedOntologies = new ArrayList<Ontology>(ontologies.values());
+		}
+		for (Ontology o : loadedOntologies) {
+			o.close();
+		}
+		return loadedOntologies;
+	}
+
 	/**
 	 * Serializes the given ontology element as a string.
 	 * 
@@ -14,6 +14,8 @@
 
 package ch.uzh.ifi.attempto.acewiki.core;
 
+import java.util.Locale;
+
 import ch.uzh.ifi.attempto.echocomp.LocaleResources;
 
 /**
@@ -74,7 +76,18 @@ public class GeneralTopic extends AbstractOntologyElement implements TopicElemen
 	}
 	
 	public String[] getHeadwords() {
-		return new String[] { getLocalized(text) };
+		return getHeadwords(LocaleResources.getLocale());
+	}
+
+	/**
+	 * Returns the headwords for the given locale. The text of a topic can be a text key, in which
+	 * case the headword depends on the locale.
+	 * 
+	 * @param locale The locale.
+	 * @return The headwords.
+	 */
+	public String[] getHeadwords(Locale locale) {
+		return new String[] { getLocalized(text, locale) };
 	}
 
 	public void setWords(String serializedWords) {
@@ -94,8 +107,8 @@ public class GeneralTopic extends AbstractOntologyElement implements TopicElemen
 		return type;
 	}
 
-	private String getLocalized(String s) {
-		String l = LocaleResources.getString(s);
+	private String getLocalized(String s, Locale locale) {
+		String l = LocaleResources.getString(locale, s);
 		if (l == null) l = s;
 		return l;
 	}
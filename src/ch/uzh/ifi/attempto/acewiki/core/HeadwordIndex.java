@@ -0,0 +1,274 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import ch.uzh.ifi.attempto.echocomp.LocaleResources;
+
+/**
+ * This class is an index of the headwords of all ontology elements, which is kept up-to-date by
+ * the ontology. For each locale, the headwords are kept in the order of the collator of the
+ * locale, grouped by their first letter in upper case. The headwords of topics are localized
+ * for each locale separately. The collation keys are computed only once per headword and locale,
+ * when the headword is added. The entries for a page can thereby be read without scanning or
+ * sorting all headwords.
+ */
+public class HeadwordIndex {
+
+	private Set<OntologyElement> elements = new HashSet<OntologyElement>();
+	private Map<Locale, SortedHeadwords> sortedHeadwords = new HashMap<Locale, SortedHeadwords>();
+
+	/**
+	 * Creates a new headword index.
+	 */
+	HeadwordIndex() {
+	}
+
+	/**
+	 * Adds the headwords of the given ontology element.
+	 *
+	 * @param element The ontology element.
+	 */
+	synchronized void add(OntologyElement element) {
+		if (!elements.add(element)) return;
+		for (SortedHeadwords s : sortedHeadwords.values()) {
+			s.add(element);
+		}
+	}
+
+	/**
+	 * Removes the headwords of the given ontology element.
+	 *
+	 * @param element The ontology element.
+	 */
+	synchronized void remove(OntologyElement element) {
+		if (!elements.remove(element)) return;
+		for (SortedHeadwords s : sortedHeadwords.values()) {
+			s.remove(element);
+		}
+	}
+
+	/**
+	 * Updates the headwords of the given ontology element after its word forms have changed.
+	 *
+	 * @param element The ontology element.
+	 */
+	synchronized void update(OntologyElement element) {
+		remove(element);
+		add(element);
+	}
+
+	/**
+	 * Returns the number of ontology elements in this index.
+	 *
+	 * @return The number of ontology elements.
+	 */
+	public synchronized int getElementCount() {
+		return elements.size();
+	}
+
+	/**
+	 * Returns the number of headwords that start with the given letter.
+	 *
+	 * @param letter The first letter in upper case, or an empty string for all headwords.
+	 * @return The number of headwords.
+	 */
+	public synchronized int getSize(String letter) {
+		return getSortedHeadwords().get(letter).size();
+	}
+
+	/**
+	 * Returns the headwords that start with the given letter, ordered by the collator of the
+	 * current locale, from the given start position on.
+	 *
+	 * @param letter The first letter in upper case, or an empty string for all headwords.
+	 * @param start The position of the first entry to be returned.
+	 * @param limit The maximum number of entries to be returned.
+	 * @return The entries.
+	 */
+	public synchronized List<Entry> getEntries(String letter, int start, int limit) {
+		List<Entry> list = getSortedHeadwords().get(letter);
+		int end = (int) Math.min((long) start + limit, list.size());
+		if (start >= end) return new ArrayList<Entry>();
+		return new ArrayList<Entry>(list.subList(start, end));
+	}
+
+	private SortedHeadwords getSortedHeadwords() {
+		Locale locale = LocaleResources.getLocale();
+		SortedHeadwords s = sortedHeadwords.get(locale);
+		if (s == null) {
+			s = new SortedHeadwords(locale);
+			for (OntologyElement e : elements) {
+				s.addUnsorted(e);
+			}
+			s.sort();
+			sortedHeadwords.put(locale, s);
+		}
+		return s;
+	}
+
+	private static String getLetter(String headword) {
+		String u = headword.toUpperCase();
+		if (u.length() == 0) return null;
+		return u.substring(0, 1);
+	}
+
+	/**
+	 * This class represents an entry of the index, consisting of a headword and its ontology
+	 * element.
+	 */
+	public static class Entry implements Comparable<Entry> {
+
+		private final String headword;
+		private final OntologyElement element;
+		private final CollationKey key;
+
+		private Entry(String headword, OntologyElement element, CollationKey key) {
+			this.headword = headword;
+			this.element = element;
+			this.key = key;
+		}
+
+		/**
+		 * Returns the headword.
+		 *
+		 * @return The headword.
+		 */
+		public String getHeadword() {
+			return headword;
+		}
+
+		/**
+		 * Returns the ontology element.
+		 *
+		 * @return The ontology element.
+		 */
+		public OntologyElement getElement() {
+			return element;
+		}
+
+		public int compareTo(Entry other) {
+			int c = key.compareTo(other.key);
+			if (c != 0) return c;
+			c = headword.compareTo(other.headword);
+			if (c != 0) return c;
+			return element.getId() < other.element.getId() ? -1 :
+				(element.getId() == other.element.getId() ? 0 : 1);
+		}
+
+	}
+
+	private static class SortedHeadwords {
+
+		private final Locale locale;
+		private final Collator collator;
+		private final List<Entry> all = new ArrayList<Entry>();
+		private final Map<String, List<Entry>> letters = new HashMap<String, List<Entry>>();
+		// The headwords as they were added, so that they can be removed even if they have changed:
+		private final Map<OntologyElement, String[]> headwords =
+				new HashMap<OntologyElement, String[]>();
+
+		SortedHeadwords(Locale locale) {
+			this.locale = locale;
+			collator = Collator.getInstance(locale);
+		}
+
+		List<Entry> get(String letter) {
+			if (letter.length() == 0) return all;
+			List<Entry> list = letters.get(letter);
+			if (list == null) return Collections.emptyList();
+			return list;
+		}
+
+		void addUnsorted(OntologyElement element) {
+			String[] h = getHeadwords(element);
+			headwords.put(element, h);
+			for (String headword : h) {
+				Entry entry = new Entry(headword, element, collator.getCollationKey(headword));
+				all.add(entry);
+				String letter = getLetter(headword);
+				if (letter != null) getList(letter).add(entry);
+			}
+		}
+
+		void sort() {
+			Collections.sort(all);
+			for (List<Entry> list : letters.values()) {
+				Collections.sort(list);
+			}
+		}
+
+		void add(OntologyElement element) {
+			String[] h = getHeadwords(element);
+			headwords.put(element, h);
+			for (String headword : h) {
+				Entry entry = new Entry(headword, element, collator.getCollationKey(headword));
+				insert(all, entry);
+				String letter = getLetter(headword);
+				if (letter != null) insert(getList(letter), entry);
+			}
+		}
+
+		void remove(OntologyElement element) {
+			String[] h = headwords.remove(element);
+			if (h == null) return;
+			for (String headword : h) {
+				Entry entry = new Entry(headword, element, collator.getCollationKey(headword));
+				delete(all, entry);
+				String letter = getLetter(headword);
+				if (letter != null) delete(getList(letter), entry);
+			}
+		}
+
+		private String[] getHeadwords(OntologyElement element) {
+			if (element instanceof GeneralTopic) {
+				return ((GeneralTopic) element).getHeadwords(locale);
+			}
+			return element.getHeadwords();
+		}
+
+		private List<Entry> getList(String letter) {
+			List<Entry> list = letters.get(letter);
+			if (list == null) {
+				list = new ArrayList<Entry>();
+				letters.put(letter, list);
+			}
+			return list;
+		}
+
+		private static void insert(List<Entry> list, Entry entry) {
+			int i = Collections.binarySearch(list, entry);
+			if (i < 0) i = -i - 1;
+			list.add(i, entry);
+		}
+
+		private static void delete(List<Entry> list, Entry entry) {
+			int i = Collections.binarySearch(list, entry);
+			if (i >= 0) list.remove(i);
+		}
+
+	}
+
+}
@@ -0,0 +1,404 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * This class is an append-only journal for the serialized ontology elements of one ontology. Each
+ * change of an ontology element is appended as a record to the journal file. Records are written
+ * by a background thread that collects all records that are waiting at a given time and writes
+ * them to the disk with a single forced write (group commit). When the journal gets too long, the
+ * current state is written into a new snapshot file and a new journal file is started.
+ *<p>
+ * The files of a journal are "snapshot-N" and "journal-N" where N is the current generation. A
+ * record consists of a type byte, the element id, the length and the UTF-8 bytes of the
+ * serialized element, and a CRC32 checksum. A record that is incomplete or has a wrong checksum
+ * marks the end of the valid part of a file (e.g. after a crash during a write).
+ *<p>
+ * If a batch of records cannot be written, the journal file is truncated to its length before
+ * the batch and the journal stops writing: the records of the batch and all later records are
+ * not acknowledged, and saving further records fails.
+ */
+class Journal {
+
+	private static final byte SAVE = 1;
+	private static final byte DELETE = 2;
+
+	private final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(this.getClass());
+
+	private final File dir;
+	private final int compactionThreshold;
+
+	// These fields are guarded by this object:
+	private final Map<Long, String> state = new TreeMap<Long, String>();
+	private List<Record> pending = new ArrayList<Record>();
+	private long lastEnqueued = 0;
+	private long lastCommitted = 0;
+	private boolean closed = false;
+	private IOException failure = null;
+
+	// These fields are only accessed by the writer thread (after opening the journal):
+	private int generation = 0;
+	private RandomAccessFile journalFile;
+	private long recordsSinceSnapshot = 0;
+
+	private Thread writer;
+
+	/**
+	 * Creates a new journal object for the given directory. The journal has to be opened before
+	 * it can be used.
+	 * 
+	 * @param dir The directory of the journal files.
+	 * @param compactionThreshold The number of records after which a new snapshot is written.
+	 */
+	Journal(File dir, int compactionThreshold) {
+		this.dir = dir;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Opens the journal by reading the latest snapshot and replaying the journal records that
+	 * were written after it. The background writer thread is started.
+	 * 
+	 * @return The serialized ontology elements by their ids.
+	 * @throws IOException if the journal files cannot be read or written.
+	 */
+	synchronized SortedMap<Long, String> open() throws IOException {
+		if (!dir.exists()) dir.mkdirs();
+
+		for (File f : dir.listFiles()) {
+			if (f.getName().matches("snapshot-[0-9]+")) {
+				int g = Integer.parseInt(f.getName().substring("snapshot-".length()));
+				if (g > generation) generation = g;
+			}
+		}
+
+		File snapshot = new File(dir, "snapshot-" + generation);
+		if (snapshot.exists()) {
+			long valid = readRecords(snapshot);
+			if (valid < snapshot.length()) {
+				throw new IOException("Corrupt snapshot file: " + snapshot);
+			}
+		}
+
+		File journal = new File(dir, "journal-" + generation);
+		long valid = 0;
+		if (journal.exists()) {
+			valid = readRecords(journal);
+			if (valid < journal.length()) {
+				log.warn("Discarding incomplete records at the end of {}", journal);
+			}
+		}
+		journalFile = new RandomAccessFile(journal, "rw");
+		journalFile.setLength(valid);
+		journalFile.seek(valid);
+
+		// Remove the files of older generations and unfinished snapshots:
+		for (File f : dir.listFiles()) {
+			if (!f.equals(snapshot) && !f.equals(journal)) {
+				f.delete();
+			}
+		}
+
+		writer = new Thread("acewiki-journal-" + dir.getName()) {
+			public void run() {
+				writeRecords();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+
+		return new TreeMap<Long, String>(state);
+	}
+
+	/**
+	 * Appends a record for the given ontology element to the journal. The record is written
+	 * asynchronously; {@link #awaitCommit} can be used to wait until it is on the disk.
+	 * 
+	 * @param id The id of the ontology element.
+	 * @param serialized The serialized ontology element, or null if the element was deleted.
+	 * @return The sequence number of the record, or -1 if the state of the element did not
+	 *     change and no record was appended.
+	 */
+	synchronized long append(long id, String serialized) {
+		if (failure != null) {
+			throw new RuntimeException("Cannot write journal: " + dir, failure);
+		}
+		if (closed) {
+			throw new IllegalStateException("Journal is closed: " + dir);
+		}
+		if (serialized == null) {
+			if (!state.containsKey(id)) return -1;
+			state.remove(id);
+		} else {
+			if (serialized.equals(state.get(id))) return -1;
+			state.put(id, serialized);
+		}
+		lastEnqueued++;
+		pending.add(new Record(lastEnqueued, id, serialized));
+		notifyAll();
+		return lastEnqueued;
+	}
+
+	/**
+	 * Waits until the record with the given sequence number has been written to the disk.
+	 * 
+	 * @param seq The sequence number of the record.
+	 * @throws RuntimeException if the record could not be written.
+	 */
+	synchronized void awaitCommit(long seq) {
+		boolean interrupted = false;
+		while (lastCommitted < seq && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+		if (lastCommitted < seq) {
+			throw new RuntimeException("Cannot write journal: " + dir, failure);
+		}
+	}
+
+	/**
+	 * Closes the journal. Records that have already been appended are still written.
+	 */
+	void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeRecords() {
+		while (true) {
+			List<Record> batch;
+			synchronized (this) {
+				while (pending.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException ex) {}
+				}
+				if (pending.isEmpty()) break;
+				batch = pending;
+				pending = new ArrayList<Record>();
+			}
+
+			long start = -1;
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				for (Record r : batch) {
+					writeRecord(r.id, r.serialized, bytes);
+				}
+				FileChannel channel = journalFile.getChannel();
+				start = channel.position();
+				ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			} catch (IOException ex) {
+				log.error("Cannot write journal: " + dir, ex);
+				// Records of the failed batch must not be replayed after a restart:
+				if (start >= 0) {
+					try {
+						journalFile.setLength(start);
+					} catch (IOException ex2) {
+						log.error("Cannot truncate journal: " + dir, ex2);
+					}
+				}
+				synchronized (this) {
+					failure = ex;
+					notifyAll();
+				}
+				break;
+			}
+
+			synchronized (this) {
+				lastCommitted = batch.get(batch.size()-1).seq;
+				notifyAll();
+			}
+
+			recordsSinceSnapshot += batch.size();
+			if (recordsSinceSnapshot >= compactionThreshold) {
+				try {
+					compact();
+				} catch (IOException ex) {
+					// The records are safe in the current journal; compaction is tried again later.
+					log.error("Cannot compact journal: " + dir, ex);
+					recordsSinceSnapshot = 0;
+				}
+			}
+		}
+
+		try {
+			journalFile.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the current state into a new snapshot file and starts a new journal file.
+	 */
+	private void compact() throws IOException {
+		Map<Long, String> s;
+		synchronized (this) {
+			s = new TreeMap<Long, String>(state);
+		}
+
+		int g = generation + 1;
+		File tmp = new File(dir, "snapshot-" + g + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			for (Map.Entry<Long, String> e : s.entrySet()) {
+				writeRecord(e.getKey(), e.getValue(), bytes);
+				if (bytes.size() > 1 << 20) {
+					bytes.writeTo(out);
+					bytes.reset();
+				}
+			}
+			bytes.writeTo(out);
+			out.getChannel().force(false);
+		} finally {
+			out.close();
+		}
+
+		// The new journal is created before the snapshot becomes valid, so that no later record
+		// can end up in the old journal once the new snapshot is there:
+		File newJournal = new File(dir, "journal-" + g);
+		RandomAccessFile newJournalFile = new RandomAccessFile(newJournal, "rw");
+		if (!tmp.renameTo(new File(dir, "snapshot-" + g))) {
+			newJournalFile.close();
+			newJournal.delete();
+			throw new IOException("Cannot rename snapshot file: " + tmp);
+		}
+
+		RandomAccessFile oldJournalFile = journalFile;
+		journalFile = newJournalFile;
+		oldJournalFile.close();
+		new File(dir, "journal-" + generation).delete();
+		new File(dir, "snapshot-" + generation).delete();
+		generation = g;
+		recordsSinceSnapshot = 0;
+		log.info("Journal compacted: {} (generation {})", dir, g);
+	}
+
+	private static void writeRecord(long id, String serialized, ByteArrayOutputStream out)
+			throws IOException {
+		byte[] data = (serialized == null ? new byte[0] : serialized.getBytes("UTF-8"));
+		ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(data.length + 13);
+		DataOutputStream record = new DataOutputStream(recordBytes);
+		record.writeByte(serialized == null ? DELETE : SAVE);
+		record.writeLong(id);
+		record.writeInt(data.length);
+		record.write(data);
+		record.flush();
+		CRC32 crc = new CRC32();
+		crc.update(recordBytes.toByteArray());
+		record.writeInt((int) crc.getValue());
+		record.flush();
+		recordBytes.writeTo(out);
+	}
+
+	/**
+	 * Reads the records of the given file and applies them to the state.
+	 * 
+	 * @param file The snapshot or journal file.
+	 * @return The length of the valid part of the file.
+	 */
+	private long readRecords(File file) throws IOException {
+		long fileLength = file.length();
+		long valid = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while (valid < fileLength) {
+				byte type = in.readByte();
+				long id = in.readLong();
+				int length = in.readInt();
+				if ((type != SAVE && type != DELETE) || length < 0 ||
+						length > fileLength - valid - 17) {
+					break;
+				}
+				byte[] data = new byte[length];
+				in.readFully(data);
+				int checksum = in.readInt();
+
+				ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(length + 13);
+				DataOutputStream record = new DataOutputStream(recordBytes);
+				record.writeByte(type);
+				record.writeLong(id);
+				record.writeInt(length);
+				record.write(data);
+				record.flush();
+				CRC32 crc = new CRC32();
+				crc.update(recordBytes.toByteArray());
+				if ((int) crc.getValue() != checksum) break;
+
+				if (type == SAVE) {
+					state.put(id, new String(data, "UTF-8"));
+				} else {
+					state.remove(id);
+				}
+				valid += length + 17;
+			}
+		} catch (EOFException ex) {
+			// incomplete record at the end of the file
+		} finally {
+			in.close();
+		}
+		return valid;
+	}
+
+	private static class Record {
+
+		final long seq;
+		final long id;
+		final String serialized;
+
+		Record(long seq, long id, String serialized) {
+			this.seq = seq;
+			this.id = id;
+			this.serialized = serialized;
+		}
+
+	}
+
+}
@@ -0,0 +1,176 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * This class implements persistent storage features for AceWiki data on the basis of an
+ * append-only journal for each ontology. In contrast to {@link FileBasedStorage}, which rewrites
+ * one file per ontology element, each change is appended to the journal and forced to the disk
+ * before the save-method returns. Changes of concurrent editors are written together (group
+ * commit). The journal is regularly compacted into a snapshot file, and on startup the snapshot is
+ * read and the journal replayed.
+ *<p>
+ * The journal files of an ontology are stored in a directory with the name of the ontology and
+ * the extension ".journal". If no such directory exists, the ontology is loaded from the data of
+ * the file-based storage (which is left untouched) and then written into a new journal. During
+ * this migration, a marker file with the extension ".journal.incomplete" exists, which is only
+ * removed after all elements have been written. If the marker is found on startup, the migration
+ * was interrupted, and the journal is discarded and migrated again. Users are stored in the same
+ * way as by the file-based storage.
+ *<p>
+ * The ontology parameter "journal_compaction_threshold" defines the number of journal records
+ * after which a new snapshot is written. The default is 10000.
+ */
+public class JournalStorage extends FileBasedStorage {
+
+	private final Map<String, Journal> journals = new HashMap<String, Journal>();
+
+	/**
+	 * Creates a new journal-based storage object.
+	 * 
+	 * @param dir The path at which ontologies should be stored.
+	 */
+	public JournalStorage(String dir) {
+		super(dir);
+	}
+
+	void readOntologyElements(Ontology ontology) {
+		String name = ontology.getName();
+		File journalDir = new File(getDirectory() + "/" + name + ".journal");
+		File marker = getMigrationMarker(ontology);
+		boolean migrate = !journalDir.exists() || marker.exists();
+		if (migrate) {
+			if (journalDir.exists()) {
+				ontology.log("discarding journal of interrupted migration");
+				for (File f : journalDir.listFiles()) {
+					f.delete();
+				}
+			}
+			try {
+				marker.getParentFile().mkdirs();
+				marker.createNewFile();
+			} catch (IOException ex) {
+				throw new RuntimeException("Cannot create migration marker " + marker, ex);
+			}
+			// The elements are written to the new journal when the loading is completed.
+			ontology.log("loading file-based data into a new journal");
+			super.readOntologyElements(ontology);
+		}
+
+		int threshold = ontology.getParameterAsInt("journal_compaction_threshold");
+		if (threshold < 1) threshold = 10000;
+		Journal journal = new Journal(journalDir, threshold);
+		SortedMap<Long, String> elements;
+		try {
+			elements = journal.open();
+		} catch (IOException ex) {
+			throw new RuntimeException("Cannot open journal of ontology " + name, ex);
+		}
+		synchronized (journals) {
+			journals.put(name, journal);
+		}
+		if (migrate) return;
+
+		SortedMap<Long, Callable<String>> sources = new TreeMap<Long, Callable<String>>();
+		for (final Map.Entry<Long, String> e : elements.entrySet()) {
+			sources.put(e.getKey(), new Callable<String>() {
+				public String call() {
+					return e.getValue();
+				}
+			});
+		}
+		System.err.print("Entities:   ");
+		ConsoleProgressBar pb = new ConsoleProgressBar(sources.size());
+		loadOntologyElements(sources, ontology, pb);
+		pb.complete();
+	}
+
+	void loadedElementsSaved(Ontology ontology) {
+		// At this point, all migrated elements are committed to the journal:
+		File marker = getMigrationMarker(ontology);
+		if (marker.exists() && !marker.delete()) {
+			throw new RuntimeException("Cannot delete migration marker " + marker);
+		}
+	}
+
+	private File getMigrationMarker(Ontology ontology) {
+		return new File(getDirectory() + "/" + ontology.getName() + ".journal.incomplete");
+	}
+
+	void elementLoaded(OntologyElement element, String serialized) {
+		// The journal keeps track of the stored state on its own.
+	}
+
+	public void save(OntologyElement oe) {
+		save(Collections.singletonList(oe));
+	}
+
+	void save(List<OntologyElement> elements) {
+		Map<Journal, Long> lastRecords = new LinkedHashMap<Journal, Long>();
+		for (OntologyElement oe : elements) {
+			Ontology o = oe.getOntology();
+
+			// Ontology elements of incomplete ontologies are not saved at this point:
+			if (isIncomplete(o)) continue;
+
+			Journal journal;
+			synchronized (journals) {
+				journal = journals.get(o.getName());
+			}
+			long seq;
+			if (o.contains(oe)) {
+				seq = journal.append(oe.getId(), serialize(oe));
+			} else {
+				seq = journal.append(oe.getId(), null);
+			}
+			if (seq < 0) {
+				addSkippedWrite();
+			} else {
+				lastRecords.put(journal, seq);
+			}
+		}
+		// All records are appended before waiting so that they can be written together:
+		for (Map.Entry<Journal, Long> e : lastRecords.entrySet()) {
+			e.getKey().awaitCommit(e.getValue());
+		}
+	}
+
+	/**
+	 * Closes the journals of all loaded ontologies. The ontologies are closed first, so that
+	 * their pending commits are saved. Changes that have already been saved are still written to
+	 * the disk, but no further changes can be saved afterwards. (The snapshot files of the
+	 * file-based storage are not written.)
+	 */
+	public void close() {
+		closeOntologies();
+		synchronized (journals) {
+			for (Journal journal : journals.values()) {
+				journal.close();
+			}
+		}
+	}
+
+}
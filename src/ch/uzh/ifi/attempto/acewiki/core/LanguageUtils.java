@@ -14,6 +14,7 @@
 
 package ch.uzh.ifi.attempto.acewiki.core;
 
+import java.text.Collator;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -27,8 +28,6 @@ import ch.uzh.ifi.attempto.echocomp.LocaleResources;
  */
 public class LanguageUtils {
 	
-	private static OntologyElementsComparator comparator = new OntologyElementsComparator();
-	
 	// no instances allowed:
 	private LanguageUtils() {}
 
@@ -72,11 +71,27 @@ public class LanguageUtils {
 	 * @param elements The list to be sorted.
 	 */
 	public static void sortOntologyElements(List<? extends OntologyElement> elements) {
-		Collections.sort(elements, comparator);
+		Collections.sort(elements, getOntologyElementsComparator());
+	}
+	
+	/**
+	 * Returns a comparator that sorts ontology elements according to their main headword. It uses
+	 * the collator of the current locale.
+	 * 
+	 * @return The comparator.
+	 */
+	static Comparator<OntologyElement> getOntologyElementsComparator() {
+		return new OntologyElementsComparator(LocaleResources.getCollator());
 	}
 	
 	
 	private static class OntologyElementsComparator implements Comparator<OntologyElement> {
+		
+		private final Collator collator;
+		
+		OntologyElementsComparator(Collator collator) {
+			this.collator = collator;
+		}
 
 		public int compare(OntologyElement o1, OntologyElement o2) {
 			if (o1 instanceof GeneralTopic && !(o2 instanceof GeneralTopic)) {
@@ -86,7 +101,7 @@ public class LanguageUtils {
 			} else {
 				String s1 = o1.getHeadwords()[0];
 				String s2 = o2.getHeadwords()[0];
-				return LocaleResources.getCollator().compare(s1, s2);
+				return collator.compare(s1, s2);
 			}
 		}
 		
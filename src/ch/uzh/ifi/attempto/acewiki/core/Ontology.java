@@ -15,38 +15,87 @@
 package ch.uzh.ifi.attempto.acewiki.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import ch.uzh.ifi.attempto.base.Logger;
+import ch.uzh.ifi.attempto.base.TextElement;
 
 /**
  * This class represents an AceWiki ontology which consists of ontology element definitions and
  * of ontological statements. Each ontology element has its own article that consists of
  * ontological statements.
+ *<p>
+ * Methods that change the ontology are synchronized on the ontology object, so that changes are
+ * performed one at a time. Methods that only read the ontology (like {@link #get},
+ * {@link #getElement}, {@link #getOntologyElements}, {@link #contains}, and
+ * {@link #getReferences}) are not synchronized and do not wait for changes that are in progress,
+ * which can take a long time if the reasoner is involved.
+ *<p>
+ * New sentences of articles are checked for consistency by a separate thread, one group of
+ * sentences after the other (see {@link #commitSentencesAsync}). If the reasoner supports it, the
+ * check runs on a snapshot without holding the lock of the ontology, and the sentences are only
+ * integrated if the ontology has not changed in the meantime. Until then, they are not
+ * integrated and the reasoner keeps answering on the basis of the last consistent state.
  * 
  * @author Tobias Kuhn
  */
 public class Ontology {
 
+	// Threads that update sentences in parallel, shared by all ontologies:
+	private static final ExecutorService updateExecutor = Executors.newFixedThreadPool(
+			Math.max(4, Runtime.getRuntime().availableProcessors()),
+			new ThreadFactoryBuilder().setNameFormat("acewiki-update-%d").setDaemon(true).build()
+		);
+
+	// How often the consistency of new sentences is checked on a snapshot before they are checked
+	// while holding the lock of the ontology, if the ontology keeps changing during the checks:
+	private static final int MAX_SNAPSHOT_CHECKS = 3;
+
 	private AceWikiEngine engine;
 	private CachingReasoner reasoner;
 	private StatementFactory statementFactory;
 	private AceWikiStorage storage;
 	private Logger logger;
-
-	private Map<Long, OntologyElement> idIndex = new TreeMap<Long, OntologyElement>();
+	// The thread that checks and integrates new sentences, one group after the other:
+	private final ExecutorService commitExecutor;
+
+	private Map<Long, OntologyElement> idIndex = new ConcurrentSkipListMap<Long, OntologyElement>();
+	// Reverse index of idIndex. Ontology elements do not override equals and hashCode, so this
+	// map is based on object identity:
+	private Map<OntologyElement, Long> elementIndex =
+			new ConcurrentHashMap<OntologyElement, Long>();
+	private final HeadwordIndex headwordIndex = new HeadwordIndex();
+
+	// Inverted index from ontology elements to the sentences that use them, together with the
+	// elements under which each sentence is indexed. The index is built when it is needed for the
+	// first time (and not during loading, when sentences cannot yet be resolved) and is then
+	// updated whenever sentences are added, removed, or updated:
+	private volatile Map<OntologyElement, Set<Sentence>> referenceIndex;
+	private Map<Sentence, Set<OntologyElement>> referencedElements;
 
 	private final String name;
 	private final String baseURI;
 	private long idCount = 0;
-	private long stateID = 0;
+	private volatile long stateID = 0;
 
 	private Map<String, String> parameters;
 
@@ -62,6 +111,11 @@ public class Ontology {
 		this.storage = storage;
 
 		logger = new Logger(parameters.get("context:logdir") + "/" + name, "onto", 0);
+		commitExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("acewiki-commit-" + name)
+				.setDaemon(true)
+				.build()
+			);
 
 		engine = AbstractAceWikiEngine.createLanguageEngine(this);
 		if (engine.getReasoner() == null) {
@@ -138,10 +192,19 @@ public class Ontology {
 		if (element.getId() == -1) {
 			element.initId(nextId());
 		}
-		idIndex.put(element.getId(), element);
+		OntologyElement replaced = idIndex.put(element.getId(), element);
+		if (replaced != null) {
+			elementIndex.remove(replaced);
+			headwordIndex.remove(replaced);
+		}
+		elementIndex.put(element, element.getId());
 		if (element.getId() > idCount) idCount = element.getId();
 
 		engine.getWordIndex().elementAdded(element);
+		headwordIndex.add(element);
+		for (Sentence s : element.getArticle().getSentences()) {
+			addReferences(s);
+		}
 
 		getReasoner().loadElement(element);
 		getReasoner().flushElements();
@@ -164,10 +227,13 @@ public class Ontology {
 		stateID++;
 
 		engine.getWordIndex().elementRemoved(element);
+		headwordIndex.remove(element);
 
 		idIndex.remove(element.getId());
+		elementIndex.remove(element);
 		for (Sentence s : element.getArticle().getSentences()) {
 			retractSentence(s);
+			removeReferences(s);
 		}
 		storage.save(element);
 
@@ -187,6 +253,7 @@ public class Ontology {
 			getReasoner().unloadElement(element);
 			element.setWords(serializedWords);
 			engine.getWordIndex().elementAfterChange(element);
+			headwordIndex.update(element);
 			getReasoner().loadElement(element);
 			refresh(element);
 		} else {
@@ -195,16 +262,25 @@ public class Ontology {
 	}
 
 	/**
-	 * Returns all the sentences that use the given ontology element.
+	 * Returns all the sentences that use the given ontology element. The sentences are ordered by
+	 * the ids of their articles and by their positions in the articles.
 	 * 
 	 * @param element The ontology element.
 	 * @return A list of all sentence that contain the ontology element.
 	 */
-	public synchronized List<Sentence> getReferences(OntologyElement element) {
+	public List<Sentence> getReferences(OntologyElement element) {
+		Set<Sentence> references = getReferenceIndex().get(element);
+		if (references == null) return new ArrayList<Sentence>();
+
+		Map<Long, Article> articles = new TreeMap<Long, Article>();
+		for (Sentence s : references) {
+			Article a = s.getArticle();
+			articles.put(a.getOntologyElement().getId(), a);
+		}
 		List<Sentence> list = new ArrayList<Sentence>();
-		for (OntologyElement el : idIndex.values()) {
-			for (Sentence s : el.getArticle().getSentences()) {
-				if (s.contains(element)) {
+		for (Article a : articles.values()) {
+			for (Sentence s : a.getSentences()) {
+				if (references.contains(s)) {
 					list.add(s);
 				}
 			}
@@ -212,13 +288,82 @@ public class Ontology {
 		return list;
 	}
 
+	private Map<OntologyElement, Set<Sentence>> getReferenceIndex() {
+		Map<OntologyElement, Set<Sentence>> index = referenceIndex;
+		if (index != null) return index;
+		synchronized (this) {
+			if (referenceIndex == null) {
+				index = new ConcurrentHashMap<OntologyElement, Set<Sentence>>();
+				referencedElements = new ConcurrentHashMap<Sentence, Set<OntologyElement>>();
+				for (OntologyElement el : idIndex.values()) {
+					for (Sentence s : el.getArticle().getSentences()) {
+						addReferences(s, index);
+					}
+				}
+				referenceIndex = index;
+			}
+			return referenceIndex;
+		}
+	}
+
+	/**
+	 * Adds the given sentence to the reference index. This method has to be called when a
+	 * sentence is added to an article.
+	 * 
+	 * @param sentence The sentence.
+	 */
+	synchronized void addReferences(Sentence sentence) {
+		if (referenceIndex == null) return;
+		addReferences(sentence, referenceIndex);
+	}
+
+	private void addReferences(Sentence sentence, Map<OntologyElement, Set<Sentence>> index) {
+		Set<OntologyElement> elements = new HashSet<OntologyElement>();
+		String language = engine.getLanguages()[0];
+		for (TextElement te : sentence.getTextElements(language)) {
+			if (te instanceof OntologyTextElement) {
+				OntologyElement oe = ((OntologyTextElement) te).getOntologyElement();
+				if (oe != null && !elements.contains(oe) && sentence.contains(oe)) {
+					elements.add(oe);
+				}
+			}
+		}
+		for (OntologyElement oe : elements) {
+			Set<Sentence> sentences = index.get(oe);
+			if (sentences == null) {
+				sentences = Collections.newSetFromMap(new ConcurrentHashMap<Sentence, Boolean>());
+				index.put(oe, sentences);
+			}
+			sentences.add(sentence);
+		}
+		referencedElements.put(sentence, elements);
+	}
+
+	/**
+	 * Removes the given sentence from the reference index. This method has to be called when a
+	 * sentence is removed from an article.
+	 * 
+	 * @param sentence The sentence.
+	 */
+	synchronized void removeReferences(Sentence sentence) {
+		if (referenceIndex == null) return;
+		Set<OntologyElement> elements = referencedElements.remove(sentence);
+		if (elements == null) return;
+		for (OntologyElement oe : elements) {
+			Set<Sentence> sentences = referenceIndex.get(oe);
+			if (sentences == null) continue;
+			sentences.remove(sentence);
+			if (sentences.isEmpty()) referenceIndex.remove(oe);
+		}
+	}
+
 	/**
 	 * Returns the ontology element with the given name, or null if there is no such element.
 	 * 
 	 * @param name The name of the ontology element.
 	 * @return The ontology element.
 	 */
-	public synchronized OntologyElement getElement(String name) {
+	public OntologyElement getElement(String name) {
 		return engine.getWordIndex().getElement(name);
 	}
 
@@ -228,7 +373,7 @@ public class Ontology {
 	 * @param id The id of the ontology element.
 	 * @return The ontology element.
 	 */
-	public synchronized OntologyElement get(long id) {
+	public OntologyElement get(long id) {
 		return idIndex.get(id);
 	}
 
@@ -237,11 +382,21 @@ public class Ontology {
 	 * 
 	 * @return A list of all ontology elements.
 	 */
-	public synchronized List<OntologyElement> getOntologyElements() {
+	public List<OntologyElement> getOntologyElements() {
 		return new ArrayList<OntologyElement>(idIndex.values());
 	}
 
 
+	/**
+	 * Returns the index of the headwords of all ontology elements.
+	 * 
+	 * @return The headword index.
+	 */
+	public HeadwordIndex getHeadwordIndex() {
+		return headwordIndex;
+	}
+
+
 	/**
 	 * Returns all instances of class <code>type</code> in the current list of ontology elements.
 	 * The returned iterable has elements whose class is <code>type</code> or a subclass of <code>type</code>.
@@ -250,7 +405,7 @@ public class Ontology {
 	 * @param type the type of ontology elements desired
 	 * @return an unmodifiable iterable containing all the ontology elements that are of the requested type
 	 */
-	public synchronized <T> Iterable<T> getOntologyElements(Class<T> type) {
+	public <T> Iterable<T> getOntologyElements(Class<T> type) {
 		return Iterables.filter(idIndex.values(), type);
 	}
 
@@ -261,8 +416,8 @@ public class Ontology {
 	 * @param ontologyElement The ontology element.
 	 * @return true if the ontology element is contained by the ontology.
 	 */
-	public synchronized boolean contains(OntologyElement ontologyElement) {
-		return idIndex.containsValue(ontologyElement);
+	public boolean contains(OntologyElement ontologyElement) {
+		return elementIndex.containsKey(ontologyElement);
 	}
 
 	/**
@@ -285,21 +440,142 @@ public class Ontology {
 
 	/**
 	 * Refreshes the given ontology element. All sentences that use the ontology element are
-	 * updated.
+	 * updated. The sentences are parsed in parallel and are then committed together, with a single
+	 * consistency check. Only if they are inconsistent, they are committed in smaller and smaller
+	 * groups to find the sentences that cause the inconsistency. These sentences stay retracted.
 	 * 
 	 * @param element The ontology element to be refreshed.
 	 */
 	synchronized void refresh(OntologyElement element) {
-		for (Sentence s : getReferences(element)) {
+		List<Sentence> sentences = getReferences(element);
+		List<Sentence> integrated = new ArrayList<Sentence>();
+		List<Sentence> loaded = new ArrayList<Sentence>();
+		for (Sentence s : sentences) {
+			removeReferences(s);
 			if (s.isIntegrated()) {
-				retractSentence(s);
+				integrated.add(s);
+				if (s.isReasonable()) loaded.add(s);
+			}
+		}
+		if (!loaded.isEmpty()) {
+			log("retract " + loaded.size() + " sentences");
+			stateID++;
+			reasoner.unloadSentences(loaded);
+		}
+		for (Sentence s : integrated) {
+			s.setIntegrated(false);
+		}
+		updateSentences(sentences);
+		for (Sentence s : sentences) {
+			addReferences(s);
+		}
+		for (Sentence s : commitSentences(integrated)) {
+			getStorage().save(s.getArticle().getOntologyElement());
+		}
+		storage.save(element);
+	}
+
+	/**
+	 * Updates the given sentences in parallel and waits until all of them are updated.
+	 * 
+	 * @param sentences The sentences to be updated.
+	 */
+	private void updateSentences(List<Sentence> sentences) {
+		if (sentences.size() < 2) {
+			for (Sentence s : sentences) {
 				s.update();
-				commitSentence(s);
+			}
+			return;
+		}
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+		for (final Sentence s : sentences) {
+			futures.add(updateExecutor.submit(new Callable<Object>() {
+				public Object call() {
+					s.update();
+					return null;
+				}
+			}));
+		}
+		boolean interrupted = false;
+		try {
+			for (Future<Object> f : futures) {
+				while (true) {
+					try {
+						f.get();
+						break;
+					} catch (InterruptedException ex) {
+						interrupted = true;
+					} catch (ExecutionException ex) {
+						throw Throwables.propagate(ex.getCause());
+					}
+				}
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Commits the given sentences, which are loaded into the reasoner together. If they are
+	 * inconsistent, the sentences are split into two halves that are committed one after the
+	 * other, until the sentences that cause the inconsistency are found.
+	 * 
+	 * @param sentences The sentences to be committed.
+	 * @return The sentences that could not be committed.
+	 */
+	private List<Sentence> commitSentences(List<Sentence> sentences) {
+		List<Sentence> reasonable = new ArrayList<Sentence>();
+		for (Sentence s : sentences) {
+			if (s.isIntegrated()) continue;
+			if (s.isReasonable()) {
+				reasonable.add(s);
 			} else {
-				s.update();
+				s.setIntegrated(true);
 			}
 		}
-		storage.save(element);
+		List<Sentence> failed = new ArrayList<Sentence>();
+		commitSentences(reasonable, failed);
+		return failed;
+	}
+
+	private void commitSentences(List<Sentence> sentences, List<Sentence> failed) {
+		if (sentences.isEmpty()) return;
+		if (sentences.size() == 1) {
+			Sentence s = sentences.get(0);
+			try {
+				commitSentence(s);
+			} catch (InconsistencyException ex) {}
+			if (!s.isIntegrated()) failed.add(s);
+			return;
+		}
+
+		log("commit " + sentences.size() + " sentences");
+
+		boolean consistent;
+		try {
+			reasoner.loadSentences(sentences);
+			consistent = reasoner.isConsistent();
+		} catch (InconsistencyException ex) {
+			consistent = false;
+		} catch (Throwable t) {
+			log("error encountered!");
+			t.printStackTrace();
+			consistent = false;
+		}
+
+		if (consistent) {
+			log("consistent!");
+			for (Sentence s : sentences) {
+				s.setIntegrated(true);
+			}
+			stateID++;
+		} else {
+			log("not consistent!");
+			reasoner.unloadSentences(sentences);
+			int half = sentences.size() / 2;
+			commitSentences(sentences.subList(0, half), failed);
+			commitSentences(sentences.subList(half, sentences.size()), failed);
+		}
 	}
 
 	/**
@@ -343,6 +619,140 @@ public class Ontology {
 		stateID++;
 	}
 
+	/**
+	 * Commits the given sentences in the background. The sentences are checked for consistency
+	 * together, and if they are inconsistent, the sentences that cause the inconsistency are
+	 * searched like in {@link #refresh}. Sentences that are no longer part of their article when
+	 * their turn comes are skipped. The articles of the checked sentences are saved afterwards.
+	 * 
+	 * @param sentences The sentences to be committed.
+	 * @param listener The listener to be informed when the check is finished, or null.
+	 * @return A future that returns the rejected sentences.
+	 */
+	Future<List<Sentence>> commitSentencesAsync(final List<Sentence> sentences,
+			final CommitListener listener) {
+		return commitExecutor.submit(new Callable<List<Sentence>>() {
+			public List<Sentence> call() {
+				List<Sentence> integrated = new ArrayList<Sentence>();
+				List<Sentence> rejected = new ArrayList<Sentence>();
+				try {
+					commitPendingSentences(sentences, integrated, rejected);
+				} finally {
+					if (listener != null) {
+						listener.commitFinished(integrated, rejected);
+					}
+				}
+				return rejected;
+			}
+		});
+	}
+
+	private void commitPendingSentences(List<Sentence> sentences, List<Sentence> integrated,
+			List<Sentence> rejected) {
+		List<Sentence> pending = sentences;
+		for (int i = 1 ; ; i++) {
+			Callable<Boolean> check = null;
+			long checkedState;
+			synchronized (this) {
+				pending = getPendingSentences(pending);
+				if (pending.isEmpty()) break;
+				checkedState = stateID;
+				if (i <= MAX_SNAPSHOT_CHECKS) {
+					check = reasoner.getConsistencyCheck(pending);
+				}
+				if (check == null) {
+					rejected.addAll(commitSentences(pending));
+					break;
+				}
+			}
+
+			log("check " + pending.size() + " sentences on snapshot");
+			Boolean consistent;
+			try {
+				consistent = check.call();
+			} catch (Throwable t) {
+				log("error encountered!");
+				t.printStackTrace();
+				consistent = null;
+			}
+
+			synchronized (this) {
+				if (stateID != checkedState) {
+					log("ontology changed during check");
+					continue;
+				}
+				if (consistent == Boolean.TRUE) {
+					log("consistent!");
+					reasoner.loadSentences(pending);
+					for (Sentence s : pending) {
+						s.setIntegrated(true);
+					}
+					stateID++;
+				} else if (consistent == Boolean.FALSE && pending.size() == 1) {
+					log("not consistent!");
+					rejected.addAll(pending);
+				} else {
+					// The sentences that cause the inconsistency (or error) have to be found:
+					rejected.addAll(commitSentences(pending));
+				}
+				break;
+			}
+		}
+
+		synchronized (this) {
+			Set<OntologyElement> changed = new HashSet<OntologyElement>();
+			for (Sentence s : sentences) {
+				if (s.isIntegrated()) {
+					integrated.add(s);
+				}
+				if (s.isIntegrated() || rejected.contains(s)) {
+					changed.add(s.getArticle().getOntologyElement());
+				}
+			}
+			for (OntologyElement oe : changed) {
+				storage.save(oe);
+			}
+		}
+	}
+
+	/**
+	 * Closes this ontology. Sentences that have already been handed over to the commit thread are
+	 * still checked and saved, but no further sentences are accepted. This method waits until the
+	 * commit thread has finished, and it has to be called before the storage is closed.
+	 */
+	public void close() {
+		commitExecutor.shutdown();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (commitExecutor.awaitTermination(1, TimeUnit.MINUTES)) break;
+				log("waiting for pending commits");
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Returns the given sentences that are still part of their article and are not yet
+	 * integrated. Sentences that do not need to be checked are integrated directly.
+	 */
+	private List<Sentence> getPendingSentences(List<Sentence> sentences) {
+		List<Sentence> pending = new ArrayList<Sentence>();
+		for (Sentence s : sentences) {
+			if (s.isIntegrated()) continue;
+			Article a = s.getArticle();
+			if (!contains(a.getOntologyElement()) || !a.getStatements().contains(s)) continue;
+			if (s.isReasonable()) {
+				pending.add(s);
+			} else {
+				s.setIntegrated(true);
+			}
+		}
+		return pending;
+	}
+
 	/**
 	 * This method tries to reassert a sentence that is not yet integrated.
 	 * 
@@ -0,0 +1,30 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+/**
+ * This interface can be implemented by reasoners that can compute inferences in advance, such
+ * as the concept hierarchy and the concepts of the individuals. The caching reasoner calls it in
+ * the background after the ontology has changed.
+ */
+public interface PrecomputingReasoner extends AceWikiReasoner {
+
+	/**
+	 * Computes the concept hierarchy and the concepts of the individuals, so that later requests
+	 * can be answered without waiting for these computations.
+	 */
+	public void precomputeInferences();
+
+}
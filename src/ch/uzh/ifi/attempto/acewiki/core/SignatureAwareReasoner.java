@@ -0,0 +1,37 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.util.Set;
+
+/**
+ * This interface can be implemented by reasoners that can tell which ontology elements occur in
+ * the logical representation of a sentence. The caching reasoner uses this information to
+ * invalidate only those cached results that can be affected by a sentence that is loaded or
+ * unloaded.
+ */
+public interface SignatureAwareReasoner extends AceWikiReasoner {
+
+	/**
+	 * Returns the ontology elements that occur in the logical representation of the given
+	 * sentence or question. Null is returned if the sentence can affect reasoning results about
+	 * arbitrary ontology elements, for example because it refers to the top or bottom concept.
+	 * 
+	 * @param sentence The sentence or question.
+	 * @return The ontology elements of the sentence, or null.
+	 */
+	public Set<OntologyElement> getSignature(Sentence sentence);
+
+}
@@ -0,0 +1,37 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.core;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * This interface can be implemented by reasoners that can check new sentences against a snapshot
+ * of their current state. Such checks do not change the state of the reasoner, so that other
+ * threads can keep using it while a check is running.
+ */
+public interface SnapshotReasoner extends AceWikiReasoner {
+
+	/**
+	 * Takes a snapshot of the current state of the reasoner and returns a check that tells
+	 * whether the given sentences are consistent with this snapshot. Taking the snapshot is fast,
+	 * whereas the returned check does the actual reasoning and can be run in any thread.
+	 * 
+	 * @param sentences The sentences to be checked.
+	 * @return The consistency check, or null if no snapshot can be taken.
+	 */
+	public Callable<Boolean> getConsistencyCheck(Collection<Sentence> sentences);
+
+}
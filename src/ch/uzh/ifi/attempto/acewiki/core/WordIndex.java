@@ -67,5 +67,26 @@ public interface WordIndex {
 	 * @return The list of ontology elements.
 	 */
 	public List<OntologyElement> searchForElements(String searchText);
+	
+	/**
+	 * This method should return the number of ontology elements that match the given search
+	 * text.
+	 * 
+	 * @param searchText The text to search for.
+	 * @return The number of matching ontology elements.
+	 */
+	public int countElements(String searchText);
+	
+	/**
+	 * This method should return a part of the ranked list of ontology elements that match the
+	 * given search text. Elements with a word form that starts with the search text come before
+	 * the ones that only contain it somewhere else.
+	 * 
+	 * @param searchText The text to search for.
+	 * @param start The position of the first element to be returned.
+	 * @param limit The maximum number of elements to be returned.
+	 * @return The list of ontology elements.
+	 */
+	public List<OntologyElement> searchForElements(String searchText, int start, int limit);
 
 }
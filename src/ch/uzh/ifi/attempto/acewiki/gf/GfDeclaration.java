@@ -33,7 +33,6 @@ import ch.uzh.ifi.attempto.acewiki.core.MultilingualSentence;
 import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
 import ch.uzh.ifi.attempto.acewiki.core.PrettyTextElement;
 import ch.uzh.ifi.attempto.acewiki.core.SentenceDetail;
-import ch.uzh.ifi.attempto.ape.ACEParser;
 import ch.uzh.ifi.attempto.ape.ACEParserResult;
 import ch.uzh.ifi.attempto.ape.ACEText;
 import ch.uzh.ifi.attempto.base.APE;
@@ -396,20 +395,15 @@ public class GfDeclaration extends MultilingualSentence implements Declaration {
 	 * ch.uzh.ifi.attempto.acewiki.aceowl.ACESentence
 	 */
 	private static ACEParserResult parse(ACEText acetext, String uri) {
-		ACEParser ape = APE.getParser();
-		synchronized (ape) {
-			ape.setURI(uri);
-			ape.setClexEnabled(false);
-
-			return ape.getMultiOutput(
-					acetext.getText(),
-					acetext.getLexicon(),
-					PARAPHRASE1,
-					OWLXML,
-					OWLFSSPP,
-					DRSPP
-					);
-		}
+		return APE.parse(
+				acetext.getText(),
+				acetext.getLexicon(),
+				uri,
+				PARAPHRASE1,
+				OWLXML,
+				OWLFSSPP,
+				DRSPP
+				);
 	}
 
 }
\ No newline at end of file
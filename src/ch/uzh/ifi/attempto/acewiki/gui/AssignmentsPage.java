@@ -106,7 +106,7 @@ public class AssignmentsPage extends WikiPage implements ActionListener {
 					assignmentsColumn.add(delayedComp);
 				}
 				
-			});
+			}, this);
 		}
 	}
 
@@ -93,7 +93,7 @@ public class ConceptPage extends ArticlePage {
 							}
 						}
 						
-					});
+					}, ConceptPage.this);
 					try {
 						sleep(500);
 					} catch (InterruptedException ex) {}
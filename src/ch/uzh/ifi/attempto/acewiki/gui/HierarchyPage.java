@@ -117,7 +117,7 @@ public class HierarchyPage extends WikiPage implements ActionListener {
 					upRecalcIcon.setVisible(false);
 				}
 				
-			});
+			}, this);
 		}
 
 		if (cr.areCachedSuperConceptsUpToDate(c)) {
@@ -139,7 +139,7 @@ public class HierarchyPage extends WikiPage implements ActionListener {
 					downRecalcIcon.setVisible(false);
 				}
 				
-			});
+			}, this);
 		}
 	}
 
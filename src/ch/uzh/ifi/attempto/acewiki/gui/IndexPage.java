@@ -14,11 +14,6 @@
 
 package ch.uzh.ifi.attempto.acewiki.gui;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-
 import nextapp.echo.app.Column;
 import nextapp.echo.app.Extent;
 import nextapp.echo.app.Font;
@@ -26,9 +21,8 @@ import nextapp.echo.app.Insets;
 import nextapp.echo.app.event.ActionEvent;
 import nextapp.echo.app.event.ActionListener;
 import ch.uzh.ifi.attempto.acewiki.Wiki;
+import ch.uzh.ifi.attempto.acewiki.core.HeadwordIndex;
 import ch.uzh.ifi.attempto.acewiki.core.LanguageUtils;
-import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
-import ch.uzh.ifi.attempto.echocomp.LocaleResources;
 import ch.uzh.ifi.attempto.echocomp.SolidLabel;
 import ch.uzh.ifi.attempto.echocomp.VSpace;
 
@@ -48,7 +42,7 @@ public class IndexPage extends WikiPage implements ActionListener {
 
 	private String chosenChar = "";
 	private int chosenPage = 0;
-	private HashMap<String, OntologyElement> entries = new HashMap<String, OntologyElement>();
+	private int entryCount;
 	
 	private Column indexColumn = new Column();
 	private IndexBar letterIndexBar;
@@ -76,10 +70,12 @@ public class IndexPage extends WikiPage implements ActionListener {
 		addHorizontalLine();
 		add(new VSpace(20));
 		
-		if (getWiki().getOntologyElements().size() > simpleViewSize) {
+		if (getHeadwordIndex().getElementCount() > simpleViewSize) {
 			chosenChar = "A";
 			letterIndexBar = new IndexBar(this);
 			add(letterIndexBar);
+		} else {
+			chosenChar = "";
 		}
 		
 		numberIndexBar = new IndexBar(0, this);
@@ -89,18 +85,15 @@ public class IndexPage extends WikiPage implements ActionListener {
 		indexColumn.setCellSpacing(new Extent(2));
 		add(indexColumn);
 		
+		updateEntries();
+	}
+	
+	private void updateEntries() {
 		indexColumn.removeAll();
 		
-		entries.clear();
-		for (OntologyElement e : getWiki().getOntologyElements()) {
-			for (String indexWord : e.getHeadwords()) {
-				if (indexWord.toUpperCase().startsWith(chosenChar)) {
-					entries.put(indexWord, e);
-				}
-			}
-		}
+		entryCount = getHeadwordIndex().getSize(chosenChar);
 		
-		if (entries.size() == 0) {
+		if (entryCount == 0) {
 			numberIndexBar.setVisible(false);
 			indexColumn.add(new SolidLabel(
 					getWiki().getGUIText("acewiki_list_empty"),
@@ -108,7 +101,7 @@ public class IndexPage extends WikiPage implements ActionListener {
 					10
 				));
 		} else {
-			int i = ((entries.size()-1) / pageSize) + 1;
+			int i = ((entryCount-1) / pageSize) + 1;
 			if (chosenPage > i) chosenPage = 0;
 			numberIndexBar.setNumbers(i);
 			numberIndexBar.setActiveButton(chosenPage);
@@ -119,28 +112,25 @@ public class IndexPage extends WikiPage implements ActionListener {
 	private void updatePage() {
 		indexColumn.removeAll();
 		
-		List<String> indexWords = new ArrayList<String>(entries.keySet());
-		Collections.sort(indexWords, LocaleResources.getCollator());
+		numberIndexBar.setVisible(entryCount > pageSize);
 		
-		numberIndexBar.setVisible(entries.size() > pageSize);
-		
-		int max = entries.size();
-		if (max > (chosenPage + 1) * pageSize) max = (chosenPage + 1) * pageSize;
-		
-		for (int i = chosenPage * pageSize; i < max; i++) {
-			String t = indexWords.get(i);
-			OntologyElement el = entries.get(t);
-			t = LanguageUtils.getPrettyPrinted(t);
-			indexColumn.add(new ListItem(new WikiLink(el, t, getWiki(), false)));
+		HeadwordIndex index = getHeadwordIndex();
+		for (HeadwordIndex.Entry entry : index.getEntries(chosenChar, chosenPage * pageSize, pageSize)) {
+			String t = LanguageUtils.getPrettyPrinted(entry.getHeadword());
+			indexColumn.add(new ListItem(new WikiLink(entry.getElement(), t, getWiki(), false)));
 		}
 	}
 	
+	private HeadwordIndex getHeadwordIndex() {
+		return getWiki().getOntology().getHeadwordIndex();
+	}
+	
 	public void actionPerformed(ActionEvent e) {
 		if (e.getSource() == letterIndexBar) {
 			chosenChar = e.getActionCommand();
 			log("page", "pressed: first letter " + chosenChar);
 			chosenPage = 0;
-			update();
+			updateEntries();
 		} else if (e.getSource() == numberIndexBar) {
 			chosenPage = Integer.parseInt(e.getActionCommand()) - 1;
 			log("page", "pressed: page " + (chosenPage+1));
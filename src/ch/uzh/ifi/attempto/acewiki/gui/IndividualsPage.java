@@ -109,7 +109,7 @@ public class IndividualsPage extends WikiPage implements ActionListener {
 					individualsColumn.add(delayedComp);
 				}
 				
-			});
+			}, this);
 		}
 	}
 
@@ -15,7 +15,9 @@
 package ch.uzh.ifi.attempto.acewiki.gui;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import nextapp.echo.app.Color;
 import nextapp.echo.app.Column;
@@ -90,16 +92,20 @@ public class ReferencesPage extends WikiPage implements ActionListener {
 		title.setPostTitle("- " + getWiki().getGUIText("acewiki_page_references"));
 		title.setTooltip(page.getOntologyElement().getType());
 		referenceColumn.removeAll();
-		List<OntologyElement> ontologyElements = getWiki().getOntologyElements();
+		Map<OntologyElement, List<Sentence>> references = new HashMap<OntologyElement, List<Sentence>>();
+		for (Sentence s : getWiki().getOntology().getReferences(page.getOntologyElement())) {
+			OntologyElement oe = s.getArticle().getOntologyElement();
+			if (oe == page.getOntologyElement()) continue;
+			if (!references.containsKey(oe)) {
+				references.put(oe, new ArrayList<Sentence>());
+			}
+			references.get(oe).add(s);
+		}
+		List<OntologyElement> ontologyElements = new ArrayList<OntologyElement>(references.keySet());
 		sentences = new ArrayList<Sentence>();
 		LanguageUtils.sortOntologyElements(ontologyElements);
 		for (OntologyElement oe : ontologyElements) {
-			if (oe == page.getOntologyElement()) continue;
-			for (Sentence s : oe.getArticle().getSentences()) {
-				if (s.contains(page.getOntologyElement())) {
-					sentences.add(s);
-				}
-			}
+			sentences.addAll(references.get(oe));
 		}
 		if (sentences.size() == 0) {
 			indexBar.setVisible(false);
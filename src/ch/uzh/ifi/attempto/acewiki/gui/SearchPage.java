@@ -14,8 +14,6 @@
 
 package ch.uzh.ifi.attempto.acewiki.gui;
 
-import java.util.List;
-
 import nextapp.echo.app.Column;
 import nextapp.echo.app.Extent;
 import nextapp.echo.app.Font;
@@ -43,7 +41,8 @@ public class SearchPage extends WikiPage implements ActionListener {
 	private static final int pageSize = 50;
 	
 	private int chosenPage = 0;
-	private List<OntologyElement> searchResult;
+	private String searchText;
+	private int resultCount;
 	
 	private Column resultColumn = new Column();
 	private IndexBar indexBar;
@@ -107,14 +106,14 @@ public class SearchPage extends WikiPage implements ActionListener {
 			return;
 		}
 		
-		WordIndex index = getWiki().getEngine().getWordIndex();
-		searchResult = index.searchForElements(textField.getText());
+		searchText = textField.getText();
+		resultCount = getWiki().getEngine().getWordIndex().countElements(searchText);
 		
-		if (searchResult.size() == 0) {
+		if (resultCount == 0) {
 			indexBar.setVisible(false);
 			resultColumn.add(new SolidLabel(getWiki().getGUIText("acewiki_list_empty"), Font.ITALIC, 10));
 		} else {
-			int i = ((searchResult.size()-1) / pageSize) + 1;
+			int i = ((resultCount-1) / pageSize) + 1;
 			if (chosenPage > i) chosenPage = 0;
 			indexBar.setNumbers(i);
 			indexBar.setActiveButton(chosenPage);
@@ -125,13 +124,11 @@ public class SearchPage extends WikiPage implements ActionListener {
 	private void updatePage() {
 		resultColumn.removeAll();
 		
-		indexBar.setVisible(searchResult.size() > pageSize);
+		indexBar.setVisible(resultCount > pageSize);
 		
-		int max = searchResult.size();
-		if (max > (chosenPage + 1) * pageSize) max = (chosenPage + 1) * pageSize;
-		
-		for (int i = chosenPage * pageSize; i < max; i++) {
-			resultColumn.add(new ListItem(new WikiLink(searchResult.get(i), getWiki())));
+		WordIndex index = getWiki().getEngine().getWordIndex();
+		for (OntologyElement e : index.searchForElements(searchText, chosenPage * pageSize, pageSize)) {
+			resultColumn.add(new ListItem(new WikiLink(e, getWiki())));
 		}
 	}
 	
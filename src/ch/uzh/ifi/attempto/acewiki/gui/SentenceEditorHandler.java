@@ -22,7 +22,7 @@ import nextapp.echo.app.event.ActionListener;
 import ch.uzh.ifi.attempto.acewiki.Task;
 import ch.uzh.ifi.attempto.acewiki.Wiki;
 import ch.uzh.ifi.attempto.acewiki.core.Article;
-import ch.uzh.ifi.attempto.acewiki.core.InconsistencyException;
+import ch.uzh.ifi.attempto.acewiki.core.CommitListener;
 import ch.uzh.ifi.attempto.acewiki.core.LanguageHandler;
 import ch.uzh.ifi.attempto.acewiki.core.LanguageUtils;
 import ch.uzh.ifi.attempto.acewiki.core.Ontology;
@@ -185,41 +185,50 @@ public class SentenceEditorHandler implements ActionListener {
 		final TextContainer textContainer = editorWindow.getTextContainer();
 		final Article a = page.getArticle();
 		
+		// The sentences are checked for consistency in the background. In the meantime, they are
+		// shown as not integrated:
+		final CommitListener listener = new CommitListener() {
+			
+			public void commitFinished(List<Sentence> integrated, final List<Sentence> rejected) {
+				wiki.enqueueTask(new Runnable() {
+					public void run() {
+						if (!rejected.isEmpty()) {
+							wiki.showWindow(
+								new MessageWindow(
+									"acewiki_message_conflicttitle",
+									"acewiki_message_conflict",
+									"general_action_ok"
+								)
+							);
+						}
+						page.update();
+						page.getWiki().update();
+					}
+				});
+			}
+			
+		};
+		
+		// Changing the article needs the lock of the ontology, which can be held for a long time
+		// by a running consistency check, so this is not done by the GUI thread:
 		Task task = new Task() {
 			
-			boolean inconsistent = false;
+			List<Statement> l = new ArrayList<Statement>(newSentences);
 			
 			public void run() {
-				try {
-					if (edit) {
-						wiki.log("edit", "sentence updated: " + textContainer.getText());
-						List<Statement> l = new ArrayList<Statement>(newSentences);
-						a.edit(statement, l);
-						wiki.updateStatement(statement, l);
-					} else {
-						wiki.log("edit", "sentence created: " + textContainer.getText());
-						a.add(statement, new ArrayList<Statement>(newSentences));
-					}
-				} catch (InconsistencyException ex) {
-					inconsistent = true;
+				if (edit) {
+					wiki.log("edit", "sentence updated: " + textContainer.getText());
+					a.edit(statement, l, listener);
+				} else {
+					wiki.log("edit", "sentence created: " + textContainer.getText());
+					a.add(statement, l, listener);
 				}
 			}
 			
 			public void updateGUI() {
+				if (edit) wiki.updateStatement(statement, l);
 				page.update();
-				if (inconsistent) {
-					wiki.showWindow(
-						new MessageWindow(
-							"acewiki_message_conflicttitle",
-							"acewiki_message_conflict",
-							"general_action_ok"
-						)
-					);
-				}
-				if (page != null) {
-					page.update();
-					page.getWiki().update();
-				}
+				page.getWiki().update();
 			}
 			
 		};
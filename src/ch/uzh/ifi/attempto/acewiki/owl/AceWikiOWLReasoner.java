@@ -17,6 +17,7 @@ package ch.uzh.ifi.attempto.acewiki.owl;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -24,6 +25,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.semanticweb.HermiT.Reasoner;
 import org.semanticweb.owlapi.apibinding.OWLManager;
@@ -32,8 +38,10 @@ import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDataProperty;
 import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
-import org.semanticweb.owlapi.model.OWLDifferentIndividualsAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLLiteral;
 import org.semanticweb.owlapi.model.OWLLogicalEntity;
 import org.semanticweb.owlapi.model.OWLNamedIndividual;
 import org.semanticweb.owlapi.model.OWLOntology;
@@ -46,36 +54,72 @@ import org.semanticweb.owlapi.profiles.OWL2ELProfile;
 import org.semanticweb.owlapi.profiles.OWL2QLProfile;
 import org.semanticweb.owlapi.profiles.OWL2RLProfile;
 import org.semanticweb.owlapi.profiles.OWLProfile;
+import org.semanticweb.owlapi.reasoner.InconsistentOntologyException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.util.Version;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
 
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
-import ch.uzh.ifi.attempto.acewiki.core.AceWikiReasoner;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import ch.uzh.ifi.attempto.acewiki.core.AnswerElement;
+import ch.uzh.ifi.attempto.acewiki.core.BatchReasoner;
 import ch.uzh.ifi.attempto.acewiki.core.Concept;
 import ch.uzh.ifi.attempto.acewiki.core.InconsistencyException;
 import ch.uzh.ifi.attempto.acewiki.core.Individual;
 import ch.uzh.ifi.attempto.acewiki.core.LanguageUtils;
 import ch.uzh.ifi.attempto.acewiki.core.Ontology;
 import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
+import ch.uzh.ifi.attempto.acewiki.core.PrecomputingReasoner;
 import ch.uzh.ifi.attempto.acewiki.core.Question;
 import ch.uzh.ifi.attempto.acewiki.core.Sentence;
+import ch.uzh.ifi.attempto.acewiki.core.SignatureAwareReasoner;
+import ch.uzh.ifi.attempto.acewiki.core.SnapshotReasoner;
 
 /**
  * This is a reasoner implementation that connects to an OWL reasoner. At the moment, it can
  * directly connect to HermiT and Pellet. Additionally, reasoners like FaCT++ can be accessed via
  * the OWLlink interface.
+ *<p>
+ * With HermiT and Pellet, queries can be answered by several read-only reasoner instances in
+ * parallel. The number of these replicas is set by the ontology parameter "reasoner_replicas"
+ * (default: 0, which means that all queries are answered one after the other by the main reasoner
+ * instance). The replicas are built in the background on a snapshot of the ontology shortly after
+ * each change. Until they are ready, the queries are answered by the main reasoner instance.
  * 
  * @author Tobias Kuhn
  */
-public class AceWikiOWLReasoner implements AceWikiReasoner {
+public class AceWikiOWLReasoner
+		implements SignatureAwareReasoner, BatchReasoner, PrecomputingReasoner, SnapshotReasoner {
 	
 	private static OWLDataFactory dataFactory = new OWLDataFactoryImpl();
 	private static OWLlinkHTTPXMLReasonerFactory owllinkReasonerFactory;
 	
 	private static Object owllinkReasonerSyncToken = new Object();
 	
+	// Waiting time after a change before the replicas are built, so that they are not rebuilt
+	// for each change of a series:
+	private static final long REPLICA_BUILD_DELAY = 500;
+	
+	// The thread that builds the reasoner replicas, shared by all ontologies:
+	private static final ScheduledExecutorService replicaExecutor =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+					.setNameFormat("acewiki-replicas")
+					.setPriority(Thread.MIN_PRIORITY)
+					.setDaemon(true)
+					.build()
+				);
+	
+	// The unique name assumption is applied by giving each named individual a different value
+	// for this functional data property. In contrast to a single axiom stating that all
+	// individuals are different, this allows for adding and removing individuals one by one:
+	private static OWLDataProperty uniqueNameProperty = dataFactory.getOWLDataProperty(
+			IRI.create("http://attempto.ifi.uzh.ch/acewiki#individual_id")
+		);
+	
 	private Ontology ontology;
 	
 	private OWLOntologyManager manager;
@@ -84,8 +128,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 	private OWLReasoner owlReasoner;
 	private String reasonerType = "none";
 	private Object reasonerSyncToken = new Object();
-	private OWLDifferentIndividualsAxiom diffIndsAxiom;
-	private boolean diffIndsAxiomOutdated = true;
+	// Creates the reasoners for consistency checks on snapshots, or is null if not supported:
+	private OWLReasonerFactory snapshotReasonerFactory;
+	// Changes of the OWL ontology are synchronized on this object, so that snapshots can be taken
+	// by other threads:
+	private final Object axiomsSyncToken = new Object();
+	private int replicaCount;
+	private volatile ReasonerReplicaPool replicaPool;
+	// These fields are guarded by axiomsSyncToken:
+	private long replicaVersion = 0;
+	private Future<?> replicaBuild;
 	private OWLProfile owlProfile;
 	private String globalRestrPolicy;
 	private Map<String, String> infoMap = new LinkedHashMap<String, String>();
@@ -100,6 +152,7 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		} catch (OWLOntologyCreationException ex) {
 			ex.printStackTrace();
 		}
+		loadAxiom(dataFactory.getOWLFunctionalDataPropertyAxiom(uniqueNameProperty));
 	}
 	
 	public void init(Ontology ontology) {
@@ -123,6 +176,8 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 			globalRestrPolicy = "no_chains";
 		}
 		
+		replicaCount = ontology.getParameterAsInt("reasoner_replicas");
+		
 		infoMap.put("global restrictions policy", globalRestrPolicy);
 		infoMap.put("OWL profile", getOWLProfileName());
 	}
@@ -186,7 +241,11 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 	 */
 	public OWLOntology exportOWLOntology(boolean consistent) {
 		Set<OWLAxiom> axioms = new HashSet<OWLAxiom>();
+		Set<OWLNamedIndividual> inds = new HashSet<OWLNamedIndividual>();
 		for (OntologyElement el : getOntologyElements()) {
+			if (el instanceof OWLIndividual) {
+				inds.add(((OWLIndividual) el).getOWLRepresentation());
+			}
 			OWLDeclarationAxiom owlDecl = null;
 			if (el instanceof OWLOntoElement) {
 				owlDecl = ((OWLOntoElement) el).getOWLDeclaration();
@@ -201,7 +260,8 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 				axioms.addAll(os.getOWLAxioms());
 			}
 		}
-		axioms.add(diffIndsAxiom);
+		// The unique name assumption is exported in its standard form:
+		axioms.add(dataFactory.getOWLDifferentIndividualsAxiom(inds));
 		
 		OWLOntology o = null;
 		try {
@@ -263,6 +323,7 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		} catch (MalformedURLException ex) { ex.printStackTrace(); }
 		
 		if (owlReasoner != null) owlReasoner.dispose();
+		snapshotReasonerFactory = null;
 		
 		if (type.equals("none")) {
 			log("no reasoner");
@@ -272,6 +333,7 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 			log("loading HermiT");
 			reasonerType = "HermiT";
 			owlReasoner = new Reasoner(owlOntology);
+			snapshotReasonerFactory = new Reasoner.ReasonerFactory();
 		} else if (type.equals("pellet")) {
 			log("loading Pellet");
 			reasonerType = "Pellet";
@@ -286,6 +348,7 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 				ex.printStackTrace();
 			}
 			owlReasoner = reasonerFactory.createNonBufferingReasoner(owlOntology);
+			snapshotReasonerFactory = reasonerFactory;
 		} else if (type.equals("owllink")) {
 			log("loading OWLlink");
 			reasonerType = "OWLlink";
@@ -305,49 +368,126 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 			log("no reasoner type specified: loading HermiT as default");
 			reasonerType = "HermiT";
 			owlReasoner = new Reasoner(owlOntology);
+			snapshotReasonerFactory = new Reasoner.ReasonerFactory();
 		} else {
 			log("ERROR: Unknown reasoner type: " + type);
 			reasonerType = "none";
 			owlReasoner = null;
 		}
-		updateDifferentIndividualsAxiom();
 		flush();
 		
 		log("reasoner loaded");
 	}
 	
+	public void flushElements() {
+		flush();
+	}
+	
+	private void flush() {
+		if (owlReasoner != null) {
+			synchronized (reasonerSyncToken) {
+				owlReasoner.flush();
+			}
+			scheduleReplicaBuild();
+		}
+	}
+	
 	/**
-	 * Updates the axiom that states that all named individuals are different. Thus, unique
-	 * name assumption is applied.
+	 * Retires the current replicas and schedules new ones to be built.
 	 */
-	private synchronized void updateDifferentIndividualsAxiom() {
-		if (!diffIndsAxiomOutdated) return;
-		
-		if (diffIndsAxiom != null) {
-			unloadAxiom(diffIndsAxiom);
+	private void scheduleReplicaBuild() {
+		if (replicaCount <= 0) return;
+		synchronized (axiomsSyncToken) {
+			final long v = ++replicaVersion;
+			if (replicaPool != null) {
+				replicaPool.retire();
+				replicaPool = null;
+			}
+			if (replicaBuild != null) replicaBuild.cancel(false);
+			if (snapshotReasonerFactory == null) return;
+			replicaBuild = replicaExecutor.schedule(new Runnable() {
+				public void run() {
+					try {
+						buildReplicas(v);
+					} catch (RuntimeException ex) {
+						log("building reasoner replicas failed: " + ex);
+					}
+				}
+			}, REPLICA_BUILD_DELAY, TimeUnit.MILLISECONDS);
 		}
-		
-		Set<OWLNamedIndividual> inds = new HashSet<OWLNamedIndividual>();
-		for (OntologyElement oe : getOntologyElements()) {
-			if (oe instanceof OWLIndividual) {
-				inds.add(((OWLIndividual) oe).getOWLRepresentation());
+	}
+	
+	/**
+	 * Builds the replicas on a snapshot of the current ontology. The pool is used as soon as the
+	 * first replica is ready, and the building stops if the ontology changes in the meantime.
+	 */
+	private void buildReplicas(long v) {
+		OWLReasonerFactory factory = snapshotReasonerFactory;
+		OWLOntology snapshot;
+		synchronized (axiomsSyncToken) {
+			if (v != replicaVersion || factory == null) return;
+			try {
+				snapshot = OWLManager.createOWLOntologyManager().createOntology(
+						owlOntology.getAxioms()
+					);
+			} catch (OWLOntologyCreationException ex) {
+				ex.printStackTrace();
+				return;
 			}
 		}
-		diffIndsAxiom = dataFactory.getOWLDifferentIndividualsAxiom(inds);
-		
-		loadAxiom(diffIndsAxiom);
 		
-		diffIndsAxiomOutdated = false;
+		ReasonerReplicaPool pool = new ReasonerReplicaPool();
+		for (int i = 0 ; i < replicaCount ; i++) {
+			OWLReasoner replica = factory.createNonBufferingReasoner(snapshot);
+			try {
+				replica.precomputeInferences(
+						InferenceType.CLASS_HIERARCHY,
+						InferenceType.CLASS_ASSERTIONS
+					);
+			} catch (UnsupportedOperationException ex) {
+				// The inferences are then computed when they are needed
+			}
+			if (!pool.add(replica)) return;
+			synchronized (axiomsSyncToken) {
+				if (v != replicaVersion) {
+					pool.retire();
+					return;
+				}
+				replicaPool = pool;
+			}
+		}
+		log("reasoner replicas built: " + pool.size());
 	}
 	
-	public void flushElements() {
-		flush();
+	/**
+	 * This interface represents a query that can be answered by the main reasoner instance or by
+	 * one of the replicas.
+	 */
+	private interface Query<T> {
+		
+		public T run(OWLReasoner r);
+		
 	}
 	
-	private void flush() {
-		if (owlReasoner != null) {
+	/**
+	 * Answers the query by an unused replica, or by the main reasoner instance if no replicas are
+	 * ready.
+	 */
+	private <T> T query(Query<T> query) {
+		ReasonerReplicaPool pool = replicaPool;
+		if (pool != null) {
+			OWLReasoner replica = pool.borrow();
+			if (replica != null) {
+				try {
+					return query.run(replica);
+				} finally {
+					pool.release(replica);
+				}
+			}
+		}
+		synchronized (this) {
 			synchronized (reasonerSyncToken) {
-				owlReasoner.flush();
+				return query.run(owlReasoner);
 			}
 		}
 	}
@@ -358,12 +498,14 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 			owlDecl = ((OWLOntoElement) element).getOWLDeclaration();
 		}
 		if (owlDecl != null) {
-			manager.addAxiom(owlOntology, owlDecl);
-			flush();
+			synchronized (axiomsSyncToken) {
+				manager.addAxiom(owlOntology, owlDecl);
+			}
 		}
 		if (element instanceof OWLIndividual) {
-			diffIndsAxiomOutdated = true;
+			loadAxiom(getUniqueNameAxiom((OWLIndividual) element));
 		}
+		flush();
 	}
 	
 	public void unloadElement(OntologyElement element) {
@@ -372,15 +514,30 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 			owlDecl = ((OWLOntoElement) element).getOWLDeclaration();
 		}
 		if (owlDecl != null) {
-			manager.removeAxiom(owlOntology, owlDecl);
-			flush();
+			synchronized (axiomsSyncToken) {
+				manager.removeAxiom(owlOntology, owlDecl);
+			}
 		}
 		if (element instanceof OWLIndividual) {
-			diffIndsAxiomOutdated = true;
+			unloadAxiom(getUniqueNameAxiom((OWLIndividual) element));
 		}
+		flush();
+	}
+	
+	/**
+	 * Returns the axiom that gives the individual its value for the unique name property, which
+	 * is derived from the id of the individual.
+	 */
+	private OWLAxiom getUniqueNameAxiom(OWLIndividual ind) {
+		OWLLiteral id = dataFactory.getOWLLiteral(ind.getId() + "", OWL2Datatype.XSD_LONG);
+		return dataFactory.getOWLDataPropertyAssertionAxiom(
+				uniqueNameProperty,
+				ind.getOWLRepresentation(),
+				id
+			);
 	}
 	
-	public synchronized List<Concept> getConcepts(Individual ind) {
+	public List<Concept> getConcepts(Individual ind) {
 		List<Concept> concepts = new ArrayList<Concept>();
 		OWLIndividual owlInd = (OWLIndividual) ind;
 		for (OWLClass oc : getConcepts(owlInd.getOWLRepresentation())) {
@@ -393,17 +550,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		return concepts;
 	}
 	
-	private synchronized Set<OWLClass> getConcepts(OWLNamedIndividual owlInd) {
-		if (owlReasoner == null) {
-			return Collections.emptySet();
-		} else {
-			synchronized (reasonerSyncToken) {
-				return owlReasoner.getTypes(owlInd, false).getFlattened();
+	private Set<OWLClass> getConcepts(final OWLNamedIndividual owlInd) {
+		if (owlReasoner == null) return Collections.emptySet();
+		return query(new Query<Set<OWLClass>>() {
+			public Set<OWLClass> run(OWLReasoner r) {
+				return r.getTypes(owlInd, false).getFlattened();
 			}
-		}
+		});
 	}
 	
-	public synchronized List<Individual> getIndividuals(Concept concept) {
+	public List<Individual> getIndividuals(Concept concept) {
 		OWLConcept ac = (OWLConcept) concept;
 		List<Individual> inds = new ArrayList<Individual>();
 		for (OWLNamedIndividual oi : getIndividuals(ac.getOWLRepresentation())) {
@@ -415,17 +571,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		return inds;
 	}
 	
-	private synchronized Set<OWLNamedIndividual> getIndividuals(OWLClassExpression owlClass) {
-		if (owlReasoner == null) {
-			return Collections.emptySet();
-		} else {
-			synchronized (reasonerSyncToken) {
-				return owlReasoner.getInstances(owlClass, false).getFlattened();
+	private Set<OWLNamedIndividual> getIndividuals(final OWLClassExpression owlClass) {
+		if (owlReasoner == null) return Collections.emptySet();
+		return query(new Query<Set<OWLNamedIndividual>>() {
+			public Set<OWLNamedIndividual> run(OWLReasoner r) {
+				return r.getInstances(owlClass, false).getFlattened();
 			}
-		}
+		});
 	}
 	
-	public synchronized List<Concept> getSuperConcepts(Concept concept) {
+	public List<Concept> getSuperConcepts(Concept concept) {
 		OWLConcept ac = (OWLConcept) concept;
 		List<Concept> concepts = new ArrayList<Concept>();
 		for (OWLClass oc : getSuperConcepts(ac.getOWLRepresentation())) {
@@ -437,17 +592,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		return concepts;
 	}
 	
-	private synchronized Set<OWLClass> getSuperConcepts(OWLClass owlClass) {
-		if (owlReasoner == null) {
-			return Collections.emptySet();
-		} else {
-			synchronized (reasonerSyncToken) {
-				return owlReasoner.getSuperClasses(owlClass, false).getFlattened();
+	private Set<OWLClass> getSuperConcepts(final OWLClass owlClass) {
+		if (owlReasoner == null) return Collections.emptySet();
+		return query(new Query<Set<OWLClass>>() {
+			public Set<OWLClass> run(OWLReasoner r) {
+				return r.getSuperClasses(owlClass, false).getFlattened();
 			}
-		}
+		});
 	}
 	
-	public synchronized List<Concept> getSubConcepts(Concept concept) {
+	public List<Concept> getSubConcepts(Concept concept) {
 		OWLConcept ac = (OWLConcept) concept;
 		List<Concept> concepts = new ArrayList<Concept>();
 		for (OWLClass oc : getSubConcepts(ac.getOWLRepresentation())) {
@@ -459,17 +613,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		return concepts;
 	}
 	
-	private synchronized Set<OWLClass> getSubConcepts(OWLClass owlClass) {
-		if (owlReasoner == null) {
-			return Collections.emptySet();
-		} else {
-			synchronized (reasonerSyncToken) {
-				return owlReasoner.getSubClasses(owlClass, false).getFlattened();
+	private Set<OWLClass> getSubConcepts(final OWLClass owlClass) {
+		if (owlReasoner == null) return Collections.emptySet();
+		return query(new Query<Set<OWLClass>>() {
+			public Set<OWLClass> run(OWLReasoner r) {
+				return r.getSubClasses(owlClass, false).getFlattened();
 			}
-		}
+		});
 	}
 	
-	public synchronized List<AnswerElement> getAnswer(Question q) {
+	public List<AnswerElement> getAnswer(Question q) {
 		if (owlReasoner == null) return null;
 		
 		OWLQuestion question = (OWLQuestion) q;
@@ -514,6 +667,53 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		return c;
 	}
 	
+	public synchronized void precomputeInferences() {
+		if (owlReasoner == null) return;
+		try {
+			synchronized (reasonerSyncToken) {
+				owlReasoner.precomputeInferences(
+						InferenceType.CLASS_HIERARCHY,
+						InferenceType.CLASS_ASSERTIONS
+					);
+			}
+		} catch (UnsupportedOperationException ex) {
+			// The inferences are then computed when they are needed
+		}
+	}
+	
+	/**
+	 * Returns a consistency check that runs on a copy of the current axioms, with a new reasoner
+	 * instance of the same type. This is not supported for OWLlink, where the reasoner is shared.
+	 */
+	public synchronized Callable<Boolean> getConsistencyCheck(Collection<Sentence> sentences) {
+		if (owlReasoner == null) {
+			return new Callable<Boolean>() {
+				public Boolean call() {
+					return true;
+				}
+			};
+		}
+		if (snapshotReasonerFactory == null) return null;
+		final OWLReasonerFactory factory = snapshotReasonerFactory;
+		final Set<OWLAxiom> axioms = new HashSet<OWLAxiom>(owlOntology.getAxioms());
+		for (Sentence s : sentences) {
+			axioms.addAll(((OWLSentence) s).getOWLAxioms());
+		}
+		return new Callable<Boolean>() {
+			public Boolean call() throws OWLOntologyCreationException {
+				OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+				OWLReasoner r = factory.createNonBufferingReasoner(m.createOntology(axioms));
+				try {
+					return r.isSatisfiable(dataFactory.getOWLThing());
+				} catch (InconsistentOntologyException ex) {
+					return false;
+				} finally {
+					r.dispose();
+				}
+			}
+		};
+	}
+	
 	public synchronized boolean isSatisfiable(Concept concept) {
 		if (owlReasoner == null) return true;
 		if (!(concept instanceof OWLConcept)) return false;
@@ -528,11 +728,16 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 	}
 	
 	public void loadSentence(Sentence s) {
-		OWLSentence sentence = (OWLSentence) s;
+		loadSentences(Collections.singleton(s));
+	}
+	
+	public void loadSentences(Collection<Sentence> sentences) {
+		List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+		for (Sentence s : sentences) {
+			axioms.addAll(((OWLSentence) s).getOWLAxioms());
+		}
 		try {
-			for (OWLAxiom ax : sentence.getOWLAxioms()) {
-				loadAxiom(ax);
-			}
+			loadAxioms(axioms);
 			flush();
 		} catch (OWLlinkErrorResponseException ex) {
 			// FaCT++ throws an exception here when inconsistency is encountered
@@ -549,29 +754,94 @@ public class AceWikiOWLReasoner implements AceWikiReasoner {
 		}
 	}
 	
+	public Set<OntologyElement> getSignature(Sentence s) {
+		if (!(s instanceof OWLSentence)) return null;
+		Set<OWLEntity> entities = new HashSet<OWLEntity>();
+		for (OWLAxiom ax : ((OWLSentence) s).getOWLAxioms()) {
+			entities.addAll(ax.getSignature());
+		}
+		if (s instanceof OWLQuestion) {
+			OWLQuestion question = (OWLQuestion) s;
+			if (question.getQuestionOWLClass() != null) {
+				entities.addAll(question.getQuestionOWLClass().getSignature());
+			}
+			if (question.getQuestionOWLIndividual() != null) {
+				entities.add(question.getQuestionOWLIndividual());
+			}
+		}
+		Set<OntologyElement> signature = new HashSet<OntologyElement>();
+		for (OWLEntity entity : entities) {
+			// Datatypes and annotation properties do not connect the ontology elements:
+			if (!(entity instanceof OWLLogicalEntity)) continue;
+			// Entities that cannot be mapped to ontology elements (including the top and bottom
+			// entities) are treated as affecting everything:
+			OntologyElement oe = get((OWLLogicalEntity) entity);
+			if (oe == null) return null;
+			signature.add(oe);
+		}
+		return signature;
+	}
+	
 	public void unloadSentence(Sentence s) {
-		OWLSentence sentence = (OWLSentence) s;
-		for (OWLAxiom ax : sentence.getOWLAxioms()) {
-			unloadAxiom(ax);
+		unloadSentences(Collections.singleton(s));
+	}
+	
+	public void unloadSentences(Collection<Sentence> sentences) {
+		List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+		for (Sentence s : sentences) {
+			axioms.addAll(((OWLSentence) s).getOWLAxioms());
 		}
+		unloadAxioms(axioms);
 		flush();
 	}
 	
 	private void loadAxiom(OWLAxiom ax) {
-		Integer count = axiomsMap.get(ax);
-		if (count == null) count = 0;
-		if (count == 0) {
-			manager.addAxiom(owlOntology, ax);
+		loadAxioms(Collections.singleton(ax));
+	}
+	
+	/**
+	 * Loads the given axioms. Axioms can be loaded several times; they are added to the OWL
+	 * ontology when they are loaded for the first time, all with a single change.
+	 */
+	private void loadAxioms(Collection<OWLAxiom> axioms) {
+		Set<OWLAxiom> added = new HashSet<OWLAxiom>();
+		for (OWLAxiom ax : axioms) {
+			Integer count = axiomsMap.get(ax);
+			if (count == null) count = 0;
+			if (count == 0) {
+				added.add(ax);
+			}
+			axiomsMap.put(ax, count+1);
+		}
+		if (!added.isEmpty()) {
+			synchronized (axiomsSyncToken) {
+				manager.addAxioms(owlOntology, added);
+			}
 		}
-		axiomsMap.put(ax, count+1);
 	}
 	
 	private void unloadAxiom(OWLAxiom ax) {
-		Integer count = axiomsMap.get(ax);
-		if (count == 1) {
-			manager.removeAxiom(owlOntology, ax);
+		unloadAxioms(Collections.singleton(ax));
+	}
+	
+	/**
+	 * Unloads the given axioms. Axioms are removed from the OWL ontology when they have been
+	 * unloaded as many times as they have been loaded, all with a single change.
+	 */
+	private void unloadAxioms(Collection<OWLAxiom> axioms) {
+		Set<OWLAxiom> removed = new HashSet<OWLAxiom>();
+		for (OWLAxiom ax : axioms) {
+			Integer count = axiomsMap.get(ax);
+			if (count == 1) {
+				removed.add(ax);
+			}
+			axiomsMap.put(ax, count-1);
+		}
+		if (!removed.isEmpty()) {
+			synchronized (axiomsSyncToken) {
+				manager.removeAxioms(owlOntology, removed);
+			}
 		}
-		axiomsMap.put(ax, count-1);
 	}
 	
 	private void log(String text) {
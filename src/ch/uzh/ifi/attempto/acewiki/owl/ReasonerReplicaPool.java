@@ -0,0 +1,115 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.owl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+/**
+ * This class manages read-only reasoner instances that are built on a snapshot of the OWL
+ * ontology. Each instance is used by one thread at a time, so that as many queries can run in
+ * parallel as there are instances. When the ontology changes, the pool is retired and its
+ * instances are disposed as soon as they are no longer used.
+ */
+class ReasonerReplicaPool {
+	
+	private final BlockingQueue<OWLReasoner> idleReplicas = new LinkedBlockingQueue<OWLReasoner>();
+	// These fields are guarded by this object:
+	private final List<OWLReasoner> replicas = new ArrayList<OWLReasoner>();
+	private boolean retired = false;
+	
+	/**
+	 * Adds a new replica to the pool. The replica is disposed right away if the pool is already
+	 * retired.
+	 * 
+	 * @param replica The new replica.
+	 * @return true if the replica has been added.
+	 */
+	synchronized boolean add(OWLReasoner replica) {
+		if (retired) {
+			replica.dispose();
+			return false;
+		}
+		replicas.add(replica);
+		idleReplicas.add(replica);
+		return true;
+	}
+	
+	/**
+	 * Returns a replica that is not used by another thread, and waits for one if necessary.
+	 * 
+	 * @return The replica, or null if the pool is retired.
+	 */
+	OWLReasoner borrow() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					OWLReasoner replica = idleReplicas.poll(100, TimeUnit.MILLISECONDS);
+					if (replica != null) return replica;
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+				synchronized (this) {
+					if (retired) return null;
+				}
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Gives back a replica that has been returned by {@link #borrow}.
+	 * 
+	 * @param replica The replica.
+	 */
+	synchronized void release(OWLReasoner replica) {
+		if (retired) {
+			replica.dispose();
+		} else {
+			idleReplicas.add(replica);
+		}
+	}
+	
+	/**
+	 * Retires the pool. The replicas that are not in use are disposed immediately, the others
+	 * when they are released.
+	 */
+	synchronized void retire() {
+		retired = true;
+		List<OWLReasoner> idle = new ArrayList<OWLReasoner>();
+		idleReplicas.drainTo(idle);
+		for (OWLReasoner r : idle) {
+			r.dispose();
+		}
+		replicas.clear();
+	}
+	
+	/**
+	 * Returns the number of replicas in the pool.
+	 * 
+	 * @return The number of replicas.
+	 */
+	synchronized int size() {
+		return replicas.size();
+	}
+	
+}
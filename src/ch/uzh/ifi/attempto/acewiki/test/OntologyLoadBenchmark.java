@@ -0,0 +1,87 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.uzh.ifi.attempto.acewiki.core.FileBasedStorage;
+import ch.uzh.ifi.attempto.acewiki.core.Ontology;
+
+/**
+ * Measures the time needed to load ontologies of different sizes. The ontologies consist of
+ * proper names without articles and are loaded without a reasoner. If loading scales linearly,
+ * the time per element stays roughly the same for all sizes.
+ */
+public class OntologyLoadBenchmark {
+
+	private static int[] sizes = new int[] {1000, 2000, 4000, 8000, 16000};
+
+	/**
+	 * Starts the benchmark.
+	 * 
+	 * @param args The path of a directory for the temporary data (optional).
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir;
+		if (args.length > 0) {
+			dir = new File(args[0]);
+		} else {
+			dir = new File(System.getProperty("java.io.tmpdir"), "acewiki-load-benchmark");
+		}
+		dir.mkdirs();
+
+		// Warm-up:
+		load(dir, 1000);
+
+		System.out.println("elements    time (ms)    per element (us)");
+		for (int n : sizes) {
+			long t = load(dir, n);
+			System.out.println(String.format("%8d %12d %19.1f", n, t / 1000000, t / 1000.0 / n));
+		}
+	}
+
+	private static long load(File dir, int n) throws IOException {
+		String name = "bench" + n;
+		File dataDir = new File(dir, name);
+		dataDir.mkdirs();
+		for (int i = 1 ; i <= n ; i++) {
+			FileWriter w = new FileWriter(new File(dataDir, i + ""));
+			w.write("type:propername\nwords:Name" + i + ";Name" + i + ";;;\n");
+			w.close();
+		}
+
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("context:logdir", dir.getPath() + "/logs");
+		parameters.put("reasoner", "none");
+
+		long start = System.nanoTime();
+		Ontology ontology = new FileBasedStorage(dir.getPath()).getOntology(name, parameters);
+		long time = System.nanoTime() - start;
+
+		if (ontology.getOntologyElements().size() != n + 1) {
+			throw new RuntimeException("Unexpected number of elements");
+		}
+		for (File f : dataDir.listFiles()) {
+			f.delete();
+		}
+		dataDir.delete();
+		return time;
+	}
+
+}
@@ -0,0 +1,105 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.acewiki.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.uzh.ifi.attempto.acewiki.core.FileBasedStorage;
+import ch.uzh.ifi.attempto.acewiki.core.Ontology;
+import ch.uzh.ifi.attempto.acewiki.core.OntologyElement;
+
+/**
+ * Measures the time needed to add a proper name to ontologies with different numbers of
+ * individuals, using the HermiT reasoner. Each addition includes the consistency check that
+ * applies the unique name assumption to the new individual. If the unique name assumption is
+ * maintained incrementally, the time per addition grows only slowly with the number of
+ * individuals.
+ */
+public class UniqueNameBenchmark {
+
+	private static int[] sizes = new int[] {1000, 2000, 4000, 8000, 16000};
+	private static int additions = 20;
+
+	/**
+	 * Starts the benchmark.
+	 * 
+	 * @param args The path of a directory for the temporary data (optional).
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir;
+		if (args.length > 0) {
+			dir = new File(args[0]);
+		} else {
+			dir = new File(System.getProperty("java.io.tmpdir"), "acewiki-una-benchmark");
+		}
+		dir.mkdirs();
+
+		// Warm-up:
+		run(dir, 1000);
+
+		System.out.println("individuals    load (ms)    per addition (ms)");
+		for (int n : sizes) {
+			long[] t = run(dir, n);
+			System.out.println(String.format(
+					"%11d %12d %20.2f",
+					n,
+					t[0] / 1000000,
+					t[1] / 1000000.0 / additions
+				));
+		}
+	}
+
+	private static long[] run(File dir, int n) throws IOException {
+		String name = "una" + n;
+		File dataDir = new File(dir, name);
+		dataDir.mkdirs();
+		for (int i = 1 ; i <= n ; i++) {
+			FileWriter w = new FileWriter(new File(dataDir, i + ""));
+			w.write("type:propername\nwords:Name" + i + ";Name" + i + ";;;\n");
+			w.close();
+		}
+
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("context:logdir", dir.getPath() + "/logs");
+		parameters.put("reasoner", "HermiT");
+
+		long start = System.nanoTime();
+		Ontology ontology = new FileBasedStorage(dir.getPath()).getOntology(name, parameters);
+		ontology.getReasoner().isConsistent();
+		long loadTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 1 ; i <= additions ; i++) {
+			OntologyElement oe = ontology.getEngine().createOntologyElement("propername");
+			oe.setWords("NewName" + i + ";NewName" + i + ";;;");
+			ontology.register(oe);
+			if (!ontology.getReasoner().isConsistent()) {
+				throw new RuntimeException("Unexpected inconsistency");
+			}
+		}
+		long addTime = System.nanoTime() - start;
+
+		for (File f : dataDir.listFiles()) {
+			f.delete();
+		}
+		dataDir.delete();
+		return new long[] {loadTime, addTime};
+	}
+
+}
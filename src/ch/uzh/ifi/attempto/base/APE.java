@@ -15,14 +15,26 @@
 package ch.uzh.ifi.attempto.base;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import ch.uzh.ifi.attempto.ape.ACEParser;
+import ch.uzh.ifi.attempto.ape.ACEParserResult;
 import ch.uzh.ifi.attempto.ape.APESocket;
 import ch.uzh.ifi.attempto.ape.APELocal;
 import ch.uzh.ifi.attempto.ape.APEWebservice;
+import ch.uzh.ifi.attempto.ape.Lexicon;
+import ch.uzh.ifi.attempto.ape.LexiconEntry;
+import ch.uzh.ifi.attempto.ape.OutputType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
- * This class is used to get an instance of ACEParser by parameters.
+ * This class is used to get an instance of ACEParser by parameters. Texts can also be parsed
+ * with {@link #parse}, which uses a pool of ACEParser instances so that several texts can be
+ * parsed at the same time, and caches the results.
  *
  * Following parameters are recognized:
  * - apetype
@@ -35,14 +47,26 @@ import ch.uzh.ifi.attempto.ape.APEWebservice;
  *   Port number of APE socket server, used by APESocket whe apetype is "socket".
  * - apewebservice
  *   APE webservice URL, use by APEWebservice when apetype is "webservice".
+ * - apepoolsize
+ *   Number of ACEParser instances used by parse, default is 4 for "socket" and "webservice".
+ *   There is always only one instance when apetype is "local".
+ * - apecachesize
+ *   Maximum number of results cached by parse, default is 10000. 0 disables the cache.
  *
  * @author Yu Changyuan
  */
 
 public class APE {
 
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+
     private static Map<String, String> parameters = new HashMap<String, String>();
 
+    // The pool and the cache for the default parameters, created when needed:
+    private static BlockingQueue<ACEParser> pool;
+    private static Cache<String, ACEParserResult> cache;
+
     /**
      * Get a ACEParser instance by parameters.
      *
@@ -94,8 +118,97 @@ public class APE {
      *
      * @param parameters The parameters to set.
      */
-    public static void setParameters(Map<String, String> parameters) {
+    public static synchronized void setParameters(Map<String, String> parameters) {
         APE.parameters = parameters;
+        pool = null;
+        cache = null;
+    }
+
+    /**
+     * Parses the given text with the default parameters, using the ACEParser instances of the
+     * pool. Clex is disabled. The results are cached by the text, the lexicon entries, the URI,
+     * and the output types. Several texts can be parsed at the same time, up to the size of the
+     * pool.
+     *
+     * @param text The text to be parsed.
+     * @param lexicon The lexicon to be used.
+     * @param uri The URI for the OWL outputs.
+     * @param outputTypes The output types.
+     * @return The parser result.
+     */
+    public static ACEParserResult parse(String text, Lexicon lexicon, String uri,
+            OutputType... outputTypes) {
+        Cache<String, ACEParserResult> c = getCache();
+        String key = null;
+        if (c != null) {
+            key = getCacheKey(text, lexicon, uri, outputTypes);
+            ACEParserResult result = c.getIfPresent(key);
+            if (result != null) return result;
+        }
+
+        BlockingQueue<ACEParser> p = getPool();
+        ACEParser ape = Uninterruptibles.takeUninterruptibly(p);
+        ACEParserResult result;
+        try {
+            ape.setURI(uri);
+            ape.setClexEnabled(false);
+            result = ape.getMultiOutput(text, lexicon, outputTypes);
+        } finally {
+            p.add(ape);
+        }
+
+        if (c != null) c.put(key, result);
+        return result;
+    }
+
+    private static synchronized BlockingQueue<ACEParser> getPool() {
+        if (pool == null) {
+            int size = 1;
+            String apeType = parameters.get("context:apetype");
+            if ("socket".equals(apeType) || "webservice".equals(apeType)) {
+                size = getIntParameter("context:apepoolsize", DEFAULT_POOL_SIZE);
+                if (size < 1) size = 1;
+            }
+            pool = new LinkedBlockingQueue<ACEParser>();
+            for (int i = 0 ; i < size ; i++) {
+                pool.add(getParser(parameters));
+            }
+        }
+        return pool;
+    }
+
+    private static synchronized Cache<String, ACEParserResult> getCache() {
+        if (cache == null) {
+            int size = getIntParameter("context:apecachesize", DEFAULT_CACHE_SIZE);
+            if (size <= 0) return null;
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(size)
+                    .softValues()
+                    .build();
+        }
+        return cache;
+    }
+
+    private static String getCacheKey(String text, Lexicon lexicon, String uri,
+            OutputType... outputTypes) {
+        // The order of the lexicon entries does not matter:
+        List<String> entries = new ArrayList<String>();
+        if (lexicon != null) {
+            for (LexiconEntry le : lexicon.getEntries()) {
+                entries.add(le.toString());
+            }
+        }
+        Collections.sort(entries);
+        return uri + "\n" + Arrays.toString(outputTypes) + "\n" + entries + "\n" + text;
+    }
+
+    private static int getIntParameter(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(parameters.get(name));
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     /**
@@ -0,0 +1,124 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This is a bounded ring buffer that can be filled by many threads without locking and that is
+ * emptied by a single thread. Each slot has a sequence number that tells whether it is free for
+ * the producer at a given position or filled for the consumer.
+ *
+ * @param <E> The type of the elements.
+ */
+class LogBuffer<E> {
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Creates a new ring buffer.
+	 *
+	 * @param capacity The capacity, which has to be a power of two.
+	 */
+	LogBuffer(int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity has to be a power of two: " + capacity);
+		}
+		this.capacity = capacity;
+		mask = capacity - 1;
+		elements = new AtomicReferenceArray<E>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0 ; i < capacity ; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds an element at the end of the buffer. This method can be called by any thread.
+	 *
+	 * @param element The element to be added.
+	 * @return true if the element was added; false if the buffer is full.
+	 */
+	boolean offer(E element) {
+		while (true) {
+			long t = tail.get();
+			int i = (int) t & mask;
+			long s = sequences.get(i);
+			if (s == t) {
+				if (tail.compareAndSet(t, t + 1)) {
+					elements.lazySet(i, element);
+					sequences.set(i, t + 1);
+					return true;
+				}
+			} else if (s < t) {
+				return false;
+			}
+			// Another thread has claimed this position in the meantime.
+		}
+	}
+
+	/**
+	 * Removes and returns the first element of the buffer. This method must only be called by the
+	 * consuming thread.
+	 *
+	 * @return The first element, or null if the buffer is empty.
+	 */
+	E poll() {
+		long h = head.get();
+		int i = (int) h & mask;
+		if (sequences.get(i) != h + 1) return null;
+		E element = elements.get(i);
+		elements.lazySet(i, null);
+		sequences.lazySet(i, h + capacity);
+		head.lazySet(h + 1);
+		return element;
+	}
+
+	/**
+	 * Returns the number of elements that have been added so far, including the ones that have
+	 * been removed again.
+	 *
+	 * @return The number of added elements.
+	 */
+	long getAddedCount() {
+		return tail.get();
+	}
+
+	/**
+	 * Returns the approximate number of elements in the buffer.
+	 *
+	 * @return The number of elements.
+	 */
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * Returns the capacity of the buffer.
+	 *
+	 * @return The capacity.
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+}
@@ -0,0 +1,167 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.base;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * This class represents a log file. The entries are collected in a batch and then written
+ * together through a channel that stays open. All methods except the constructor must only be
+ * called by the thread that writes the log files, or after this thread has stopped, while
+ * holding the lock of the class {@link Logger}.
+ */
+class LogFile {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final SimpleDateFormat dateTimeFormat =
+		new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+	private static final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+	private final File dir;
+	private final File file;
+	private final StringBuilder batch = new StringBuilder();
+	private FileChannel channel;
+	private long size;
+	private String day;
+
+	/**
+	 * Creates a new log file object.
+	 *
+	 * @param fileName The name of the log file without the extension ".log". If it contains no
+	 *     directory, the file is placed in the directory "logs".
+	 */
+	LogFile(String fileName) {
+		String d = "logs";
+		String fn = fileName;
+		if (fileName.indexOf("/") > -1) {
+			d = fileName.replaceFirst("(.*)/[^/]*", "$1");
+			fn = fileName.replaceFirst(".*/([^/]*)", "$1");
+		}
+		dir = new File(d);
+		file = new File(dir, fn + ".log");
+	}
+
+	/**
+	 * Adds a log entry to the current batch.
+	 *
+	 * @param timestamp The time of the log entry.
+	 * @param sessionID The session id.
+	 * @param username The user name.
+	 * @param type The type of the log entry.
+	 * @param text The text of the log entry.
+	 */
+	void append(long timestamp, int sessionID, String username, String type, String text) {
+		batch.append(timestamp);
+		batch.append(" (");
+		batch.append(dateTimeFormat.format(new Date(timestamp)));
+		batch.append(") [");
+		String session = sessionID + "";
+		for (int i = session.length() ; i < 4 ; i++) {
+			batch.append('0');
+		}
+		batch.append(session);
+		batch.append("]");
+		if (username != null && !username.equals("")) {
+			batch.append(" '").append(username).append("'");
+		}
+		batch.append(" [").append(type).append("] ");
+		batch.append(text.replace("\n", "~n"));
+		batch.append('\n');
+	}
+
+	/**
+	 * Returns the number of characters in the current batch.
+	 *
+	 * @return The size of the batch.
+	 */
+	int getBatchSize() {
+		return batch.length();
+	}
+
+	/**
+	 * Writes the current batch to the file. The file is rotated first if it would get larger
+	 * than the given maximum size or if it was started on another day and daily rotation is on.
+	 *
+	 * @param maxSize The maximum file size in bytes, or 0 for no limit.
+	 * @param daily true if the file should be rotated every day.
+	 */
+	void write(long maxSize, boolean daily) {
+		if (batch.length() == 0) return;
+		ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(UTF8));
+		batch.setLength(0);
+		try {
+			String today = dayFormat.format(new Date());
+			if (channel == null) open(today);
+			if (size > 0) {
+				boolean tooLarge = maxSize > 0 && size + bytes.remaining() > maxSize;
+				if (tooLarge || (daily && !today.equals(day))) {
+					close();
+					rotate();
+					open(today);
+				}
+			}
+			while (bytes.hasRemaining()) {
+				size += channel.write(bytes);
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Closes the channel. It is opened again at the next write.
+	 */
+	void close() {
+		if (channel == null) return;
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		channel = null;
+	}
+
+	private void open(String today) throws IOException {
+		if (!dir.exists()) dir.mkdirs();
+		if (file.exists() && file.length() > 0) {
+			day = dayFormat.format(new Date(file.lastModified()));
+		} else {
+			day = today;
+		}
+		channel = new FileOutputStream(file, true).getChannel();
+		size = channel.size();
+	}
+
+	private void rotate() {
+		String name = file.getName() + "." + day;
+		File target = new File(dir, name);
+		for (int i = 1 ; target.exists() ; i++) {
+			target = new File(dir, name + "." + i);
+		}
+		if (!file.renameTo(target)) {
+			System.err.println("Cannot rename log file " + file + " to " + target);
+		}
+	}
+
+}
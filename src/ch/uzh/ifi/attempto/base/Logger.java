@@ -14,22 +14,71 @@
 
 package ch.uzh.ifi.attempto.base;
 
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class is used to log the events on the server.
+ *<p>
+ * Log entries are not written on the calling thread. They are put into a lock-free ring buffer,
+ * from which a background thread takes them and writes them in batches, at the latest after the
+ * flush interval. Each log file is written through a channel that stays open. Log files can be
+ * rotated by size and by day, which is configured by {@link #setParameters}. The following
+ * parameters are recognized:
+ * - logmaxsize
+ *   The maximum size of a log file in megabytes. Larger files are renamed and a new file is
+ *   started. The default is 0, which means that there is no limit.
+ * - logrotation
+ *   "daily" to start a new log file every day, or "none" (default).
+ * Rotated files get the day on which they were started and, if necessary, a number appended to
+ * their name, e.g. "syst.log.2012-05-31.1".
+ *<p>
+ * {@link #shutdown} stops the background thread and closes the log files, which should be done
+ * when the web application is stopped. Entries that are logged afterwards are written directly.
  * 
  * @author Tobias Kuhn
  */
 // TODO: Use java.util.logging.Logger
 public class Logger {
-	
-	private final String fileName;
-	private String username;
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final long FLUSH_INTERVAL = 200;
+	private static final int MAX_BATCH_SIZE = 64 * 1024;
+
+	private static final LogBuffer<Entry> buffer = new LogBuffer<Entry>(BUFFER_SIZE);
+	private static final ConcurrentMap<String, LogFile> logFiles =
+		new ConcurrentHashMap<String, LogFile>();
+	private static final Object flushLock = new Object();
+	private static volatile long writtenCount;
+	private static volatile long maxFileSize;
+	private static volatile boolean dailyRotation;
+	private static volatile boolean stopped = false;
+	private static final Thread writer;
+	private static final Thread shutdownHook;
+
+	static {
+		writer = new Thread("acewiki-logger") {
+			public void run() {
+				writeEntries();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+		shutdownHook = new Thread() {
+			public void run() {
+				shutdown();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	private final LogFile logFile;
+	private volatile String username;
 	private final int sessionID;
 	
 	/**
@@ -40,7 +89,13 @@ public class Logger {
 	 * @param sessionID The session id.
 	 */
 	public Logger(String fileName, String username, int sessionID) {
-		this.fileName = fileName;
+		LogFile f = logFiles.get(fileName);
+		if (f == null) {
+			LogFile newFile = new LogFile(fileName);
+			f = logFiles.putIfAbsent(fileName, newFile);
+			if (f == null) f = newFile;
+		}
+		this.logFile = f;
 		this.username = username;
 		this.sessionID = sessionID;
 	}
@@ -54,6 +109,21 @@ public class Logger {
 	public Logger(String fileName, int sessionID) {
 		this(fileName, "", sessionID);
 	}
+
+	/**
+	 * Sets the parameters for the rotation of the log files. See the class description for the
+	 * recognized parameters.
+	 * 
+	 * @param parameters The parameters.
+	 */
+	public static void setParameters(Map<String, String> parameters) {
+		long maxSize = 0;
+		try {
+			maxSize = Long.parseLong(parameters.get("context:logmaxsize")) * 1024 * 1024;
+		} catch (NumberFormatException ex) {}
+		maxFileSize = Math.max(0, maxSize);
+		dailyRotation = "daily".equals(parameters.get("context:logrotation"));
+	}
 	
 	/**
 	 * Sets the user name.
@@ -65,53 +135,146 @@ public class Logger {
 	}
 	
 	/**
-	 * Writes a log entry into the log file of the respective ontology.
+	 * Writes a log entry into the log file of the respective ontology. The entry is written
+	 * asynchronously.
 	 * 
 	 * @param type The type of the log entry.
 	 * @param text The text of the log entry.
 	 */
 	public void log(String type, String text) {
-		Calendar c = Calendar.getInstance();
-		long timestamp = System.currentTimeMillis();
-		c.setTimeInMillis(timestamp);
-		String year = c.get(Calendar.YEAR) + "";
-		String month = makeString(c.get(Calendar.MONTH)+1, 2);
-		String day = makeString(c.get(Calendar.DAY_OF_MONTH), 2);
-		String hour = makeString(c.get(Calendar.HOUR_OF_DAY), 2);
-		String min = makeString(c.get(Calendar.MINUTE), 2);
-		String sec = makeString(c.get(Calendar.SECOND), 2);
-		String millis = makeString(c.get(Calendar.MILLISECOND), 3);
-		String dateTime = year + "-" + month + "-" + day + " " + hour + ":" + min + ":" + sec + "." + millis;
-		String session = makeString(sessionID, 4);
-		String un;
-		if (username == null || username.equals("")) {
-			un = "";
-		} else {
-			un = " '" + username + "'";
+		Entry e = new Entry(logFile, System.currentTimeMillis(), sessionID, username, type, text);
+		while (!buffer.offer(e)) {
+			if (stopped && !writer.isAlive()) {
+				writeRemainingEntries();
+				continue;
+			}
+			// The buffer is full, so we have to wait for the writer:
+			LockSupport.unpark(writer);
+			Thread.yield();
+		}
+		if (stopped && !writer.isAlive()) {
+			writeRemainingEntries();
+		} else if (buffer.size() > BUFFER_SIZE / 2) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	/**
+	 * Waits until all log entries that have been logged so far are written to the files.
+	 */
+	public static void flush() {
+		long target = buffer.getAddedCount();
+		boolean interrupted = false;
+		synchronized (flushLock) {
+			while (writtenCount < target && writer.isAlive()) {
+				LockSupport.unpark(writer);
+				try {
+					flushLock.wait(FLUSH_INTERVAL);
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
 		}
-		String dir = "logs";
-		String fn = fileName;
-		if (fileName.indexOf("/") > -1) {
-			dir = fileName.replaceFirst("(.*)/[^/]*", "$1");
-			fn = fileName.replaceFirst(".*/([^/]*)", "$1");
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Writes all pending log entries, stops the background thread, and closes the log files.
+	 * The shutdown hook that writes the pending entries when the virtual machine exits is removed,
+	 * so that this class can be unloaded when the web application is stopped.
+	 */
+	public static void shutdown() {
+		stopped = true;
+		LockSupport.unpark(writer);
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		// Entries that were added while the writer was stopping:
+		writeRemainingEntries();
+		synchronized (Logger.class) {
+			for (LogFile f : logFiles.values()) {
+				f.close();
+			}
 		}
 		try {
-			if (!(new File(dir)).exists()) (new File(dir)).mkdir();
-			DataOutputStream out = new DataOutputStream(new FileOutputStream(dir + "/" + fn + ".log", true));
-			out.writeBytes(timestamp + " (" + dateTime + ") [" + session + "]" + un + " [" + type + "] " + text.replaceAll("\\n", "~n") + "\n");
-			out.flush();
-			out.close();
-		} catch (IOException ex) {
-			ex.printStackTrace();
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException ex) {
+			// The virtual machine is already shutting down.
 		}
+		if (interrupted) Thread.currentThread().interrupt();
 	}
-	
-	private static String makeString(int value, int size) {
-		String s = value + "";
-		while (s.length() < size) {
-			s = "0" + s;
+
+	/**
+	 * Writes the entries in the buffer on the calling thread, after the background thread has
+	 * stopped. The files are closed again afterwards.
+	 */
+	private static synchronized void writeRemainingEntries() {
+		List<LogFile> batchFiles = new ArrayList<LogFile>();
+		Entry e;
+		while ((e = buffer.poll()) != null) {
+			LogFile f = e.logFile;
+			if (f.getBatchSize() == 0) batchFiles.add(f);
+			f.append(e.timestamp, e.sessionID, e.username, e.type, e.text);
+		}
+		for (LogFile f : batchFiles) {
+			f.write(maxFileSize, dailyRotation);
+			f.close();
 		}
-		return s;
+	}
+
+	private static void writeEntries() {
+		List<LogFile> batchFiles = new ArrayList<LogFile>();
+		long count = 0;
+		while (true) {
+			Entry e = buffer.poll();
+			if (e != null) {
+				LogFile f = e.logFile;
+				if (f.getBatchSize() == 0) batchFiles.add(f);
+				f.append(e.timestamp, e.sessionID, e.username, e.type, e.text);
+				count++;
+				if (f.getBatchSize() < MAX_BATCH_SIZE) continue;
+			}
+			for (LogFile f : batchFiles) {
+				f.write(maxFileSize, dailyRotation);
+			}
+			batchFiles.clear();
+			if (count > writtenCount) {
+				synchronized (flushLock) {
+					writtenCount = count;
+					flushLock.notifyAll();
+				}
+			}
+			if (e == null) {
+				if (stopped) break;
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL));
+			}
+		}
+	}
+
+	private static class Entry {
+
+		final LogFile logFile;
+		final long timestamp;
+		final int sessionID;
+		final String username;
+		final String type;
+		final String text;
+
+		Entry(LogFile logFile, long timestamp, int sessionID, String username, String type,
+				String text) {
+			this.logFile = logFile;
+			this.timestamp = timestamp;
+			this.sessionID = sessionID;
+			this.username = username;
+			this.type = type;
+			this.text = text;
+		}
+
 	}
 
 }
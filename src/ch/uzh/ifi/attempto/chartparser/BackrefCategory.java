@@ -98,6 +98,21 @@ public class BackrefCategory extends Nonterminal {
 		}
 	}
 	
+	boolean canUnify(Category c, UnificationCheck check) {
+		if (!(c instanceof BackrefCategory)) return false;
+		BackrefCategory b = (BackrefCategory) c;
+		if (b.posFeatureMaps == null) return false;
+		if (b.posFeatureMaps.size() != posFeatureMaps.size()) return false;
+		for (int i = 0 ; i < posFeatureMaps.size() ; i++) {
+			if (!posFeatureMaps.get(i).canUnify(b.posFeatureMaps.get(i), check)) return false;
+		}
+		if (b.negFeatureMaps.size() != negFeatureMaps.size()) return false;
+		for (int i = 0 ; i < negFeatureMaps.size() ; i++) {
+			if (!negFeatureMaps.get(i).canUnify(b.negFeatureMaps.get(i), check)) return false;
+		}
+		return true;
+	}
+	
 	public boolean isSimilar(Category c) {
 		if (!(c instanceof BackrefCategory)) return false;
 		BackrefCategory b = (BackrefCategory) c;
@@ -166,6 +181,28 @@ public class BackrefCategory extends Nonterminal {
 		return s;
 	}
 	
+	void collectVariables(EdgeSignature s) {
+		for (FeatureMap fm : posFeatureMaps) {
+			fm.collectVariables(s);
+		}
+		for (FeatureMap fm : negFeatureMaps) {
+			fm.collectVariables(s);
+		}
+	}
+	
+	void encode(EdgeSignature s) {
+		s.add(getType());
+		s.add(name);
+		s.add(posFeatureMaps.size());
+		for (FeatureMap fm : posFeatureMaps) {
+			fm.encode(s);
+		}
+		s.add(negFeatureMaps.size());
+		for (FeatureMap fm : negFeatureMaps) {
+			fm.encode(s);
+		}
+	}
+	
 	Category deepCopy(HashMap<Integer, StringObject> stringObjs) {
 		Category c;
 		c = new BackrefCategory();
@@ -197,14 +197,21 @@ public abstract class Category {
 	 */
 	public boolean canUnify(Category category) {
 		if (!isSimilar(category)) return false;
-		Category thisC = deepCopy();
-		Category otherC = category.deepCopy();
-		try {
-			thisC.tryToUnify(otherC);
-		} catch (UnificationFailedException ex) {
-			return false;
-		}
-		return true;
+		return canUnify(category, new UnificationCheck());
+	}
+	
+	/**
+	 * Checks whether this category can unify with the given category, given the values that have
+	 * already been unified by the given unification check. This category is on the left side of
+	 * the check. Neither of the two categories are changed.
+	 * 
+	 * @param category The category for the unification check.
+	 * @param check The unification check.
+	 * @return true if the two categories can unify.
+	 */
+	boolean canUnify(Category category, UnificationCheck check) {
+		if (!name.equals(category.name) || !getType().equals(category.getType())) return false;
+		return featureMap.canUnify(category.featureMap, check);
 	}
 	
 	/**
@@ -301,6 +308,16 @@ public abstract class Category {
 		return getName() + featureMap.getIdentifier(mvars, usedFeatureNames);
 	}
 	
+	void collectVariables(EdgeSignature s) {
+		featureMap.collectVariables(s);
+	}
+	
+	void encode(EdgeSignature s) {
+		s.add(getType());
+		s.add(name);
+		featureMap.encode(s);
+	}
+	
 	/**
 	 * Creates a deep copy of this category.
 	 * 
@@ -15,11 +15,10 @@
 package ch.uzh.ifi.attempto.chartparser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * This class represents a chart (in the sense of a chart for a chart parser). A chart basically consists
@@ -30,10 +29,12 @@ import java.util.Set;
  */
 class Chart {
 	
-	private String[] usedFeatureNames;
+	private EdgeSignature signature;
 	
-	// All edges are contained by this set:
-	private Set<Edge> edges = new HashSet<Edge>();
+	// All edges are contained by this hash table, which uses open addressing with linear probing
+	// on the basis of the edge signatures:
+	private Edge[] edges = new Edge[1024];
+	private int size = 0;
 	
 	// This hashtable indexes the edges by their end positions:
 	private Map<Integer, List<Edge>> edgesByEndPos = new HashMap<Integer, List<Edge>>();
@@ -44,7 +45,7 @@ class Chart {
 	 * @param grammar The grammar for the chart.
 	 */
 	public Chart(Grammar grammar) {
-		this.usedFeatureNames = grammar.getFeatureNamesArray();
+		this.signature = new EdgeSignature(grammar.getFeatureNamesArray());
 	}
 	
 	/**
@@ -57,18 +58,68 @@ class Chart {
 	 */
 	public boolean addEdge(Edge edge) {
 		// Check whether the edge is new (i.e. not equivalent to an existing edge):
-		edge.calculateIdentifier(usedFeatureNames);
-		boolean isNewEdge = !edges.contains(edge);
+		signature.compute(edge);
+		int hash = signature.hashCode();
+		int mask = edges.length - 1;
+		int i = hash & mask;
+		while (edges[i] != null) {
+			Edge e = edges[i];
+			if (e.getSignatureHash() == hash && signature.matches(e.getSignature())) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		
+		// Add the edge to the chart:
+		edge.setSignature(signature.toArray(), hash);
+		edges[i] = edge;
+		size++;
+		if (2 * size > edges.length) {
+			resize(2 * edges.length);
+		}
 		
-		if (isNewEdge) {
-			// Add the edge to the chart:
-			edges.add(edge);
-			
-			// Update the end position hashtable:
-			getEdgesByEndPos(edge.getEndPos()).add(edge);
+		// Update the end position hashtable:
+		getEdgesByEndPos(edge.getEndPos()).add(edge);
+		
+		return true;
+	}
+	
+	private void resize(int length) {
+		Edge[] oldEdges = edges;
+		edges = new Edge[length];
+		int mask = length - 1;
+		for (Edge e : oldEdges) {
+			if (e == null) continue;
+			int i = e.getSignatureHash() & mask;
+			while (edges[i] != null) {
+				i = (i + 1) & mask;
+			}
+			edges[i] = e;
 		}
+	}
+	
+	private void removeEdge(Edge edge) {
+		int mask = edges.length - 1;
+		int i = edge.getSignatureHash() & mask;
+		while (edges[i] != edge) {
+			if (edges[i] == null) return;
+			i = (i + 1) & mask;
+		}
+		edges[i] = null;
+		size--;
 		
-		return isNewEdge;
+		// The following edges of the same cluster are moved up if their position is not reachable
+		// anymore otherwise:
+		int j = (i + 1) & mask;
+		while (edges[j] != null) {
+			int k = edges[j].getSignatureHash() & mask;
+			if ((j > i && (k <= i || k > j)) || (j < i && k <= i && k > j)) {
+				edges[i] = edges[j];
+				edges[j] = null;
+				i = j;
+			}
+			j = (j + 1) & mask;
+		}
 	}
 	
 	/**
@@ -77,7 +128,7 @@ class Chart {
 	 * @return The size of the chart.
 	 */
 	public int getSize() {
-		return edges.size();
+		return size;
 	}
 	
 	/**
@@ -105,7 +156,7 @@ class Chart {
 		List<Edge> l = edgesByEndPos.get(endPos);
 		if (l == null) return;
 		for (Edge e : l) {
-			edges.remove(e);
+			removeEdge(e);
 		}
 		l.clear();
 	}
@@ -114,14 +165,15 @@ class Chart {
 	 * Removes all edges from the chart.
 	 */
 	public void clear() {
-		edges.clear();
+		Arrays.fill(edges, null);
+		size = 0;
 		edgesByEndPos.clear();
 	}
 	
 	public String toString() {
 		String s = "";
 		for (Edge e : edges) {
-			s += e + "\n";
+			if (e != null) s += e + "\n";
 		}
 		return s;
 	}
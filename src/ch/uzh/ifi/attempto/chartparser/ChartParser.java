@@ -47,6 +47,8 @@ public class ChartParser implements PredictiveParser {
 	private boolean recalculateParseTree = true;
 	private String positionIdentifierPrefix = "#";
 	private boolean debug;
+	// Unification is checked with this object before any edges are copied:
+	private final UnificationCheck unificationCheck = new UnificationCheck();
 	
 	/**
 	 * Creates a new chart parser for the given grammar. The grammar must not be changed afterwards.
@@ -419,6 +421,8 @@ public class ChartParser implements PredictiveParser {
 					if (refpos == (p+1)) {
 						exceptions = new ArrayList<Category>();
 						for (int j = 0 ; j < negrefsCount ; j++) {
+							if (!e.getCombinedAnteList()[i].getFeatureMap().canUnify(
+									backref.getNegFeatureMaps().get(j))) continue;
 							Edge eC = e.deepCopy();
 							try {
 								FeatureMap backrefFm =
@@ -436,6 +440,8 @@ public class ChartParser implements PredictiveParser {
 					if (!makeRestriction) break;
 					
 					for (int j = 0 ; j < posrefsCount ; j++) {
+						if (!e.getCombinedAnteList()[i].getFeatureMap().canUnify(
+								backref.getPosFeatureMaps().get(j))) continue;
 						Edge eC = e.deepCopy();
 						try {
 							FeatureMap backrefFm =
@@ -459,6 +465,8 @@ public class ChartParser implements PredictiveParser {
 				boolean makeRestriction = true;
 				for (int i = 0 ; i < e.getCombinedAnteList().length ; i++) {
 					if (e.getCombinedAnteList()[i].getName().equals("//")) continue;
+					if (!e.getCombinedAnteList()[i].getFeatureMap().canUnify(
+							e.getBody()[refpos].getFeatureMap())) continue;
 					Edge eC = e.deepCopy();
 					try {
 						eC.getCombinedAnteList()[i].getFeatureMap().unify(eC.getBody()[refpos].getFeatureMap());
@@ -591,6 +599,8 @@ public class ChartParser implements PredictiveParser {
 			for (GrammarRule rule : grammar.rulesByHeadName(category.getName())) {
 				try {
 					if (!category.isSimilar(rule.getHead())) continue;
+					unificationCheck.reset();
+					if (!category.canUnify(rule.getHead(), unificationCheck)) continue;
 					Edge edgeC = existingEdge.deepCopy();
 					GrammarRule ruleC = rule.deepCopy();
 					edgeC.getNextActive().unify(ruleC.getHead());
@@ -642,6 +652,7 @@ public class ChartParser implements PredictiveParser {
 				
 				try {
 					if (!passiveEdge.getHead().isSimilar(edge.getNextActive())) continue;
+					if (!canComplete(edge, passiveEdge)) continue;
 					Edge passiveEdgeC = passiveEdge.deepCopy();
 					Edge edgeC = edge.deepCopy();
 					passiveEdgeC.getHead().unify(edgeC.getNextActive());
@@ -666,6 +677,28 @@ public class ChartParser implements PredictiveParser {
 		progressTable.put("completion", l1.size());
 	}
 
+	/**
+	 * Checks whether the given active edge can be completed with the given passive edge, without
+	 * copying or changing the edges.
+	 * 
+	 * @param edge The active edge.
+	 * @param passiveEdge The passive edge.
+	 * @return true if the completion is possible.
+	 */
+	private boolean canComplete(Edge edge, Edge passiveEdge) {
+		unificationCheck.reset();
+		if (!edge.getNextActive().canUnify(passiveEdge.getHead(), unificationCheck)) return false;
+		if (!passiveEdge.carriesAntecedentInformation()) {
+			Category[] al1 = edge.getCombinedAnteList();
+			Category[] al2 = passiveEdge.getExternalAnteList();
+			if (al1.length != al2.length) return false;
+			for (int i = 0 ; i < al1.length ; i++) {
+				if (!al1[i].canUnify(al2[i], unificationCheck)) return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Runs the resolution step, which is an extension of the standard Earley algorithm.
 	 * 
@@ -15,6 +15,7 @@
 package ch.uzh.ifi.attempto.chartparser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -45,7 +46,8 @@ class Edge {
 	
 	private Category[] body;
 	private int progress = 0;
-	private String identifier;
+	private int[] signature;
+	private int signatureHash;
 	
 	private Annotation annotation;
 	
@@ -531,60 +533,89 @@ class Edge {
 		return deepCopy(stringObjs, false);
 	}
 	
-	void calculateIdentifier(String[] usedFeatureNames) {
-		List<Integer> vars = new ArrayList<Integer>();
-		List<Integer> mvars = new ArrayList<Integer>();
-		
-		head.collectVars(vars, mvars);
+	/**
+	 * Registers the variables of this edge for the computation of its signature.
+	 * 
+	 * @param s The object that computes the signature.
+	 */
+	void collectVariables(EdgeSignature s) {
+		head.collectVariables(s);
 		for (Category c : externalAnteList) {
-			c.collectVars(vars, mvars);
+			c.collectVariables(s);
 		}
 		for (Category c : internalAnteList) {
-			c.collectVars(vars, mvars);
+			c.collectVariables(s);
 		}
 		for (Category c : body) {
-			c.collectVars(vars, mvars);
+			c.collectVariables(s);
 		}
-
-		identifier = startPos + "," + endPos + " ";
-		identifier += head.getIdentifier(mvars, usedFeatureNames) + " ";
+	}
+	
+	/**
+	 * Encodes this edge for the computation of its signature.
+	 * 
+	 * @param s The object that computes the signature.
+	 */
+	void encode(EdgeSignature s) {
+		s.add(startPos);
+		s.add(endPos);
+		s.add(progress);
+		s.add(scopeclosing ? 1 : 0);
+		s.add(externalAnteList.length);
+		s.add(internalAnteList.length);
+		s.add(body.length);
+		head.encode(s);
 		for (Category c : externalAnteList) {
-			identifier += c.getIdentifier(mvars, usedFeatureNames);
-		}
-		if (scopeclosing) {
-			identifier += "~";
-		} else {
-			identifier += "=";
+			c.encode(s);
 		}
 		for (Category c : internalAnteList) {
-			identifier += c.getIdentifier(mvars, usedFeatureNames);
+			c.encode(s);
 		}
-		identifier += " " + progress;
 		for (Category c : body) {
-			identifier += c.getIdentifier(mvars, usedFeatureNames) + " ";
+			c.encode(s);
 		}
 	}
 	
 	/**
-	 * Returns an identifier for this edge. Two edges have the same identifier if and only if they
-	 * are equivalent.
+	 * Sets the signature of this edge. Two edges have the same signature if and only if they are
+	 * equivalent. The signature is set when the edge is added to a chart.
+	 * 
+	 * @param signature The signature.
+	 * @param signatureHash The hash code of the signature.
+	 */
+	void setSignature(int[] signature, int signatureHash) {
+		this.signature = signature;
+		this.signatureHash = signatureHash;
+	}
+	
+	/**
+	 * Returns the signature of this edge, or null if it has not been set.
+	 * 
+	 * @return The signature.
+	 */
+	int[] getSignature() {
+		return signature;
+	}
+	
+	/**
+	 * Returns the hash code of the signature of this edge.
 	 * 
-	 * @return The identifier of this edge.
+	 * @return The hash code of the signature.
 	 */
-	public String getIdentifier() {
-		return identifier;
+	int getSignatureHash() {
+		return signatureHash;
 	}
 	
 	public boolean equals(Object obj) {
-		if (identifier == null) return this == obj;
+		if (signature == null) return this == obj;
 		if (!(obj instanceof Edge)) return false;
 		Edge other = (Edge) obj;
-		return identifier.equals(other.identifier);
+		return Arrays.equals(signature, other.signature);
 	}
 	
 	public int hashCode() {
-		if (identifier == null) return super.hashCode();
-		return identifier.hashCode();
+		if (signature == null) return super.hashCode();
+		return signatureHash;
 	}
 	
 	public String toString() {
@@ -0,0 +1,202 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.chartparser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class computes the signatures of edges, which are used to detect equivalent edges in a
+ * chart. A signature is an array of integers that encodes the positions, the progress, and the
+ * categories of an edge. Names and feature values are encoded by numbers that are assigned when
+ * they are encountered for the first time, and feature names by their position in the array of
+ * feature names of the grammar. Variables are only encoded if they occur more than once, by the
+ * order of their first occurrence. Two edges are equivalent if and only if they have the same
+ * signature.
+ *<p>
+ * The signature is built in a buffer that is reused for all edges, so that no objects have to be
+ * created to find out whether an equivalent edge is already in the chart.
+ */
+class EdgeSignature {
+	
+	private final String[] featureNames;
+	private final Map<String, Integer> stringIDs = new HashMap<String, Integer>();
+	
+	private int[] buffer = new int[64];
+	private int size;
+	private int hash;
+	
+	// The variables of the current edge, the ones that occur more than once, and the latter in the
+	// order in which they are encoded:
+	private int[] vars = new int[16];
+	private int varsCount;
+	private int[] multiVars = new int[16];
+	private int multiVarsCount;
+	private int[] encodedVars = new int[16];
+	private int encodedVarsCount;
+	
+	/**
+	 * Creates a new object for computing edge signatures.
+	 * 
+	 * @param featureNames The names of all features of the grammar.
+	 */
+	EdgeSignature(String[] featureNames) {
+		this.featureNames = featureNames;
+	}
+	
+	/**
+	 * Computes the signature of the given edge, which is kept in the buffer of this object.
+	 * 
+	 * @param edge The edge.
+	 */
+	void compute(Edge edge) {
+		size = 0;
+		varsCount = 0;
+		multiVarsCount = 0;
+		encodedVarsCount = 0;
+		
+		edge.collectVariables(this);
+		edge.encode(this);
+		
+		int h = 1;
+		for (int i = 0 ; i < size ; i++) {
+			h = 31 * h + buffer[i];
+		}
+		hash = h;
+	}
+	
+	/**
+	 * Returns the hash code of the computed signature.
+	 * 
+	 * @return The hash code.
+	 */
+	public int hashCode() {
+		return hash;
+	}
+	
+	/**
+	 * Returns whether the computed signature is equal to the given signature.
+	 * 
+	 * @param signature The signature to compare with.
+	 * @return true if the signatures are equal.
+	 */
+	boolean matches(int[] signature) {
+		if (signature.length != size) return false;
+		for (int i = 0 ; i < size ; i++) {
+			if (signature[i] != buffer[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns a copy of the computed signature.
+	 * 
+	 * @return The signature.
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+	
+	/**
+	 * Returns the names of all features of the grammar.
+	 * 
+	 * @return The feature names.
+	 */
+	String[] getFeatureNames() {
+		return featureNames;
+	}
+	
+	/**
+	 * Registers an occurrence of the given variable. This has to be done for all variables of an
+	 * edge before the edge is encoded.
+	 * 
+	 * @param id The identifier of the variable.
+	 */
+	void addVariable(int id) {
+		if (indexOf(vars, varsCount, id) < 0) {
+			vars = add(vars, varsCount++, id);
+		} else if (indexOf(multiVars, multiVarsCount, id) < 0) {
+			multiVars = add(multiVars, multiVarsCount++, id);
+		}
+	}
+	
+	/**
+	 * Returns the number of the given variable, which is based on the order in which the variables
+	 * are encoded, or -1 if the variable occurs only once.
+	 * 
+	 * @param id The identifier of the variable.
+	 * @return The number of the variable, or -1.
+	 */
+	int getVariableNumber(int id) {
+		if (indexOf(multiVars, multiVarsCount, id) < 0) return -1;
+		int n = indexOf(encodedVars, encodedVarsCount, id);
+		if (n < 0) {
+			n = encodedVarsCount;
+			encodedVars = add(encodedVars, encodedVarsCount++, id);
+		}
+		return n;
+	}
+	
+	/**
+	 * Appends the given number to the signature.
+	 * 
+	 * @param n The number.
+	 */
+	void add(int n) {
+		buffer = add(buffer, size++, n);
+	}
+	
+	/**
+	 * Appends the number for the given string to the signature.
+	 * 
+	 * @param s The string.
+	 */
+	void add(String s) {
+		add(getStringID(s));
+	}
+	
+	/**
+	 * Returns the number for the given string, which is assigned when the string is encountered
+	 * for the first time.
+	 * 
+	 * @param s The string.
+	 * @return The number for the string.
+	 */
+	int getStringID(String s) {
+		Integer id = stringIDs.get(s);
+		if (id == null) {
+			id = stringIDs.size();
+			stringIDs.put(s, id);
+		}
+		return id;
+	}
+	
+	private static int indexOf(int[] array, int length, int value) {
+		for (int i = 0 ; i < length ; i++) {
+			if (array[i] == value) return i;
+		}
+		return -1;
+	}
+	
+	private static int[] add(int[] array, int length, int value) {
+		if (length == array.length) {
+			array = Arrays.copyOf(array, 2 * length);
+		}
+		array[length] = value;
+		return array;
+	}
+
+}
@@ -114,12 +114,23 @@ public class FeatureMap {
 	 */
 	public boolean canUnify(FeatureMap featureMap) {
 		if (!isSimilar(featureMap)) return false;
-		FeatureMap thisC = deepCopy();
-		FeatureMap otherC = featureMap.deepCopy();
-		try {
-			thisC.tryToUnify(otherC);
-		} catch (UnificationFailedException ex) {
-			return false;
+		return canUnify(featureMap, new UnificationCheck());
+	}
+	
+	/**
+	 * Checks whether this feature map can unify with the given feature map, given the values that
+	 * have already been unified by the given unification check. This feature map is on the left
+	 * side of the check. Neither of the two feature maps are changed.
+	 * 
+	 * @param featureMap The feature map for the unification check.
+	 * @param check The unification check.
+	 * @return true if the two feature maps can unify.
+	 */
+	boolean canUnify(FeatureMap featureMap, UnificationCheck check) {
+		if (featureMap == null) return false;
+		for (Map.Entry<String, StringRef> e : features.entrySet()) {
+			StringRef v = featureMap.features.get(e.getKey());
+			if (v != null && !check.unify(e.getValue(), v)) return false;
 		}
 		return true;
 	}
@@ -226,6 +237,38 @@ public class FeatureMap {
 		return s + ")";
 	}
 	
+	void collectVariables(EdgeSignature s) {
+		for (StringRef v : features.values()) {
+			if (v.getString() == null) {
+				s.addVariable(v.getID());
+			}
+		}
+	}
+	
+	/**
+	 * Encodes this feature map for the computation of an edge signature. Each feature is encoded
+	 * by the position of its name followed by an even number for a value or an odd number for a
+	 * variable. Variables that occur only once are left out. The end is marked by -1.
+	 */
+	void encode(EdgeSignature s) {
+		String[] featureNames = s.getFeatureNames();
+		for (int i = 0 ; i < featureNames.length ; i++) {
+			StringRef v = features.get(featureNames[i]);
+			if (v == null) continue;
+			String value = v.getString();
+			if (value == null) {
+				int n = s.getVariableNumber(v.getID());
+				if (n < 0) continue;
+				s.add(i);
+				s.add(2 * n + 1);
+			} else {
+				s.add(i);
+				s.add(2 * s.getStringID(value));
+			}
+		}
+		s.add(-1);
+	}
+	
 	public String toString() {
 		String s = "";
 		Set<String> featureKeys = features.keySet();
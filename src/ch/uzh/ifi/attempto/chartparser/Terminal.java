@@ -61,6 +61,10 @@ public class Terminal extends Category {
 		}
 	}
 	
+	boolean canUnify(Category c, UnificationCheck check) {
+		return canUnify(c);
+	}
+	
 	public boolean isSimilar(Category c) {
 		if (!name.equals(c.name) || !getType().equals(c.getType())) {
 			return false;
@@ -92,6 +96,14 @@ public class Terminal extends Category {
 		return toString();
 	}
 	
+	void collectVariables(EdgeSignature s) {
+	}
+	
+	void encode(EdgeSignature s) {
+		s.add(getType());
+		s.add(name);
+	}
+	
 	public Category deepCopy() {
 		return new Terminal(name);
 	}
@@ -0,0 +1,100 @@
+// This file is part of AceWiki.
+// Copyright 2008-2012, AceWiki developers.
+// 
+// AceWiki is free software: you can redistribute it and/or modify it under the terms of the GNU
+// Lesser General Public License as published by the Free Software Foundation, either version 3 of
+// the License, or (at your option) any later version.
+// 
+// AceWiki is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+// even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+// 
+// You should have received a copy of the GNU Lesser General Public License along with AceWiki. If
+// not, see http://www.gnu.org/licenses/.
+
+package ch.uzh.ifi.attempto.chartparser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class checks whether categories and feature maps can unify without changing them, so that
+ * they only have to be copied if the unification succeeds. The string objects of the two sides
+ * are kept apart (as if the two sides had been copied separately) and are unified within a
+ * temporary union-find structure. Feature values that are shared within one side are taken into
+ * account.
+ *<p>
+ * One object can be used for several checks, but it has to be reset in between.
+ */
+class UnificationCheck {
+	
+	private final Map<StringObject, Integer> leftNodes = new HashMap<StringObject, Integer>();
+	private final Map<StringObject, Integer> rightNodes = new HashMap<StringObject, Integer>();
+	private int[] parents = new int[32];
+	private String[] values = new String[32];
+	private int size = 0;
+	
+	/**
+	 * Creates a new unification check.
+	 */
+	UnificationCheck() {
+	}
+	
+	/**
+	 * Resets this object so that it can be used for a new check.
+	 */
+	void reset() {
+		leftNodes.clear();
+		rightNodes.clear();
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+	
+	/**
+	 * Unifies a value of the left side with a value of the right side, as far as recorded by this
+	 * object.
+	 * 
+	 * @param left The value of the left side.
+	 * @param right The value of the right side.
+	 * @return true if the values can unify, given the values that have been unified before.
+	 */
+	boolean unify(StringRef left, StringRef right) {
+		int l = find(getNode(leftNodes, left.getStringObject()));
+		int r = find(getNode(rightNodes, right.getStringObject()));
+		if (l == r) return true;
+		String lv = values[l];
+		String rv = values[r];
+		if (lv != null && rv != null && !lv.equals(rv)) return false;
+		parents[r] = l;
+		if (lv == null) values[l] = rv;
+		return true;
+	}
+	
+	private int getNode(Map<StringObject, Integer> nodes, StringObject stringObject) {
+		Integer node = nodes.get(stringObject);
+		if (node != null) return node;
+		if (size == parents.length) {
+			parents = Arrays.copyOf(parents, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		parents[size] = size;
+		values[size] = stringObject.getString();
+		nodes.put(stringObject, size);
+		return size++;
+	}
+	
+	private int find(int node) {
+		int root = node;
+		while (parents[root] != root) {
+			root = parents[root];
+		}
+		while (parents[node] != root) {
+			int next = parents[node];
+			parents[node] = root;
+			node = next;
+		}
+		return root;
+	}
+
+}